@@ -0,0 +1,131 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2016, Seiji Sogabe
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.jenkinsci.plugins.gitbucket;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Stops polling a GitBucket host after repeated failures.
+ *
+ * After {@link #threshold} failures in a row the host is opened, and no
+ * polling is allowed until the open duration elapses. Then a single polling
+ * is let through as a probe: its success closes the host, and its failure
+ * opens it again.
+ */
+final class GitBucketCircuitBreaker {
+
+    private final int threshold;
+
+    private final long openDuration;
+
+    private final Map<String, Host> hosts = new HashMap<String, Host>();
+
+    /**
+     * @param threshold the failures in a row which open the host
+     * @param openDuration the milliseconds before a probe is let through
+     */
+    GitBucketCircuitBreaker(int threshold, long openDuration) {
+        this.threshold = threshold;
+        this.openDuration = openDuration;
+    }
+
+    /**
+     * Checks if a polling of the host may start now. When this returns true,
+     * the result must be passed to {@link #record(String, boolean, long)}, or
+     * the polling must be {@link #release(String) released}.
+     */
+    synchronized boolean allow(String host, long now) {
+        Host h = hosts.get(key(host));
+        if (h == null || h.openUntil == 0) {
+            return true;
+        }
+        if (h.probing || now < h.openUntil) {
+            return false;
+        }
+        h.probing = true;
+        return true;
+    }
+
+    /**
+     * Returns the milliseconds until the host lets a probe through, or 0 if
+     * it is closed.
+     */
+    synchronized long getRemainingTime(String host, long now) {
+        Host h = hosts.get(key(host));
+        if (h == null || h.openUntil == 0) {
+            return 0;
+        }
+        return Math.max(h.openUntil - now, h.probing ? openDuration : 0);
+    }
+
+    synchronized void record(String host, boolean succeeded, long now) {
+        String key = key(host);
+        if (succeeded) {
+            hosts.remove(key);
+            return;
+        }
+        Host h = hosts.get(key);
+        if (h == null) {
+            h = new Host();
+            hosts.put(key, h);
+        }
+        h.failures++;
+        if (h.probing || h.failures >= threshold) {
+            h.openUntil = now + openDuration;
+        }
+        h.probing = false;
+    }
+
+    /**
+     * Ends the polling let through without recording its result, as when it
+     * failed for a reason other than the host. An open host lets the next
+     * probe through.
+     */
+    synchronized void release(String host) {
+        Host h = hosts.get(key(host));
+        if (h != null) {
+            h.probing = false;
+        }
+    }
+
+    synchronized boolean isOpen(String host) {
+        Host h = hosts.get(key(host));
+        return h != null && h.openUntil != 0;
+    }
+
+    private static String key(String host) {
+        return host != null ? host.toLowerCase() : "";
+    }
+
+    private static final class Host {
+
+        private int failures;
+
+        // 0 while closed
+        private long openUntil;
+
+        private boolean probing;
+    }
+}
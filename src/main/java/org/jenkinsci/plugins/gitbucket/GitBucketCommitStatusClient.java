@@ -0,0 +1,271 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2016, Seiji Sogabe
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.jenkinsci.plugins.gitbucket;
+
+import hudson.util.DaemonThreadFactory;
+import hudson.util.NamingThreadFactory;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import net.sf.json.JSONObject;
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.io.output.NullOutputStream;
+
+/**
+ * Sends commit statuses to GitBucket in the background.
+ *
+ * Statuses are batched for a short delay, and a status which has not been sent
+ * yet is replaced by a newer one for the same commit and context. Requests
+ * failed by a connection failure or a server error are retried with backoff,
+ * and the ones rejected by GitBucket are dropped. HTTP connections are kept alive and
+ * reused by {@link HttpURLConnection}.
+ */
+final class GitBucketCommitStatusClient {
+
+    private static final GitBucketCommitStatusClient INSTANCE = new GitBucketCommitStatusClient(
+            Long.getLong(GitBucketCommitStatusClient.class.getName() + ".batchDelay", 500),
+            Integer.getInteger(GitBucketCommitStatusClient.class.getName() + ".maxAttempts", 5));
+
+    private static final int TIMEOUT = 10 * 1000;
+
+    private final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(
+            new NamingThreadFactory(new DaemonThreadFactory(), "GitBucket commit status"));
+
+    private final Map<String, Status> pending = new LinkedHashMap<String, Status>();
+
+    private final long batchDelay;
+
+    private final int maxAttempts;
+
+    private long scheduledAt = -1;
+
+    GitBucketCommitStatusClient(long batchDelay, int maxAttempts) {
+        this.batchDelay = batchDelay;
+        this.maxAttempts = maxAttempts;
+    }
+
+    static GitBucketCommitStatusClient get() {
+        return INSTANCE;
+    }
+
+    /**
+     * Queues the status. Never blocks the caller.
+     */
+    void submit(Status status) {
+        synchronized (pending) {
+            pending.put(status.getKey(), status);
+            schedule(System.currentTimeMillis() + batchDelay);
+        }
+    }
+
+    int getPendingCount() {
+        synchronized (pending) {
+            return pending.size();
+        }
+    }
+
+    void shutdown() {
+        executor.shutdownNow();
+    }
+
+    // must be called with the lock of pending
+    private void schedule(long at) {
+        if (scheduledAt >= 0 && scheduledAt <= at) {
+            return;
+        }
+        scheduledAt = at;
+        executor.schedule(new Runnable() {
+            @Override
+            public void run() {
+                flush();
+            }
+        }, Math.max(0, at - System.currentTimeMillis()), TimeUnit.MILLISECONDS);
+    }
+
+    private void flush() {
+        List<Status> batch = new ArrayList<Status>();
+        long now = System.currentTimeMillis();
+        synchronized (pending) {
+            scheduledAt = -1;
+            for (Iterator<Status> it = pending.values().iterator(); it.hasNext();) {
+                Status s = it.next();
+                if (s.notBefore <= now) {
+                    batch.add(s);
+                    it.remove();
+                }
+            }
+        }
+
+        for (Status s : batch) {
+            try {
+                send(s);
+            } catch (RejectedException e) {
+                LOGGER.log(Level.WARNING, e.getMessage());
+            } catch (RuntimeException e) {
+                LOGGER.log(Level.WARNING, "Failed to send commit status to " + s.url, e);
+            } catch (IOException e) {
+                s.attempts++;
+                if (s.attempts >= maxAttempts) {
+                    LOGGER.log(Level.WARNING, "Failed to send commit status to " + s.url, e);
+                    continue;
+                }
+                LOGGER.log(Level.FINE, "Failed to send commit status to " + s.url + ", will retry", e);
+                s.notBefore = System.currentTimeMillis() + batchDelay * (1L << s.attempts);
+                synchronized (pending) {
+                    // a newer status for the same commit wins over the retry
+                    if (!pending.containsKey(s.getKey())) {
+                        pending.put(s.getKey(), s);
+                    }
+                }
+            }
+        }
+
+        synchronized (pending) {
+            long next = Long.MAX_VALUE;
+            for (Status s : pending.values()) {
+                next = Math.min(next, s.notBefore);
+            }
+            if (next != Long.MAX_VALUE) {
+                schedule(Math.max(next, System.currentTimeMillis() + batchDelay));
+            }
+        }
+    }
+
+    private void send(Status s) throws IOException {
+        JSONObject json = new JSONObject();
+        json.put("state", s.state);
+        json.put("context", s.context);
+        if (s.targetUrl != null) {
+            json.put("target_url", s.targetUrl);
+        }
+        if (s.description != null) {
+            json.put("description", s.description);
+        }
+        byte[] body = json.toString().getBytes("UTF-8");
+
+        HttpURLConnection con = (HttpURLConnection) new URL(s.url).openConnection();
+        con.setConnectTimeout(TIMEOUT);
+        con.setReadTimeout(TIMEOUT);
+        con.setRequestMethod("POST");
+        con.setDoOutput(true);
+        con.setFixedLengthStreamingMode(body.length);
+        con.setRequestProperty("Content-Type", "application/json; charset=UTF-8");
+        if (s.token != null) {
+            con.setRequestProperty("Authorization", "token " + s.token);
+        }
+        OutputStream out = con.getOutputStream();
+        try {
+            out.write(body);
+        } finally {
+            out.close();
+        }
+
+        int code = con.getResponseCode();
+        // read the response fully so that the connection can be reused
+        InputStream in = code < 400 ? con.getInputStream() : con.getErrorStream();
+        if (in != null) {
+            try {
+                IOUtils.copy(in, new NullOutputStream());
+            } finally {
+                in.close();
+            }
+        }
+        if (code >= 500) {
+            throw new IOException("GitBucket returned " + code + " for " + s.url);
+        }
+        if (code >= 400) {
+            throw new RejectedException("GitBucket rejected the commit status with " + code + " for " + s.url);
+        }
+    }
+
+    /**
+     * Thrown when GitBucket rejects the request, which fails again if retried.
+     */
+    private static final class RejectedException extends IOException {
+
+        private static final long serialVersionUID = 1L;
+
+        RejectedException(String message) {
+            super(message);
+        }
+    }
+
+    /**
+     * Commit status.
+     */
+    static final class Status {
+
+        private final String url;
+
+        private final String state;
+
+        private final String context;
+
+        private final String targetUrl;
+
+        private final String description;
+
+        private final String token;
+
+        private int attempts;
+
+        private long notBefore;
+
+        /**
+         * @param url the statuses API url of the commit
+         * @param state one of pending, success, failure and error
+         */
+        Status(String url, String state, String context, String targetUrl,
+                String description, String token) {
+            this.url = url;
+            this.state = state;
+            this.context = context;
+            this.targetUrl = targetUrl;
+            this.description = description;
+            this.token = token;
+        }
+
+        String getKey() {
+            return url + '#' + context;
+        }
+
+        String getState() {
+            return state;
+        }
+    }
+
+    private static final Logger LOGGER = Logger.getLogger(GitBucketCommitStatusClient.class.getName());
+}
@@ -0,0 +1,237 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2016, Seiji Sogabe
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.jenkinsci.plugins.gitbucket;
+
+import hudson.Extension;
+import hudson.Launcher;
+import hudson.Util;
+import hudson.init.Terminator;
+import hudson.model.AbstractBuild;
+import hudson.model.AbstractProject;
+import hudson.model.BuildListener;
+import hudson.model.Result;
+import hudson.model.TaskListener;
+import hudson.model.listeners.RunListener;
+import hudson.plugins.git.Revision;
+import hudson.plugins.git.util.BuildData;
+import hudson.tasks.BuildStepDescriptor;
+import hudson.tasks.BuildStepMonitor;
+import hudson.tasks.Notifier;
+import hudson.tasks.Publisher;
+import hudson.util.Secret;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import jenkins.model.Jenkins;
+import net.sf.json.JSONObject;
+import org.jenkinsci.plugins.gitbucket.GitBucketCommitStatusClient.Status;
+import org.jenkinsci.plugins.gitbucket.GitBucketPushTrigger.GitBucketPushCause;
+import org.kohsuke.stapler.DataBoundConstructor;
+import org.kohsuke.stapler.StaplerRequest;
+
+/**
+ * Reports the build status of the pushed commit to GitBucket.
+ *
+ * The status is sent by {@link GitBucketCommitStatusClient}, so the build
+ * never waits for GitBucket.
+ */
+public class GitBucketCommitStatusPublisher extends Notifier {
+
+    private final String context;
+
+    @DataBoundConstructor
+    public GitBucketCommitStatusPublisher(String context) {
+        this.context = Util.fixEmptyAndTrim(context);
+    }
+
+    public String getContext() {
+        return context != null ? context : DEFAULT_CONTEXT;
+    }
+
+    @Override
+    public BuildStepMonitor getRequiredMonitorService() {
+        return BuildStepMonitor.NONE;
+    }
+
+    @Override
+    public boolean perform(AbstractBuild<?, ?> build, Launcher launcher, BuildListener listener) {
+        submit(build, toState(build.getResult()), listener);
+        return true;
+    }
+
+    /**
+     * Converts the build result to the commit status state.
+     *
+     * Unstable and failed builds are failures. Aborted and not built ones are
+     * errors, which did not judge the commit.
+     */
+    static String toState(Result result) {
+        if (result == null || result.isBetterOrEqualTo(Result.SUCCESS)) {
+            return "success";
+        }
+        if (result.isBetterOrEqualTo(Result.FAILURE)) {
+            return "failure";
+        }
+        return "error";
+    }
+
+    void submit(AbstractBuild<?, ?> build, String state, TaskListener listener) {
+        GitBucketProjectProperty gpp = GitBucketProjectProperty.get(build);
+        if (gpp == null || gpp.getUrl() == null) {
+            listener.getLogger().println("GitBucket URL is not set. Skip reporting the commit status.");
+            return;
+        }
+        String commitId = getCommitId(build);
+        if (commitId == null) {
+            listener.getLogger().println("No commit found. Skip reporting the commit status.");
+            return;
+        }
+        String statusesUrl = getStatusesUrl(gpp.getUrl(), commitId);
+        if (statusesUrl == null) {
+            listener.getLogger().println("GitBucket URL " + gpp.getUrl()
+                    + " is not a repository URL. Skip reporting the commit status.");
+            LOGGER.log(Level.WARNING, "Not a GitBucket repository URL: {0}", gpp.getUrl());
+            return;
+        }
+
+        String targetUrl = null;
+        String rootUrl = Jenkins.getInstance().getRootUrl();
+        if (rootUrl != null) {
+            targetUrl = rootUrl + build.getUrl();
+        }
+        String description = build.getFullDisplayName() + ' ' + state;
+        Secret token = ((DescriptorImpl) getDescriptor()).getApiToken();
+
+        listener.getLogger().println("Reporting " + state + " of " + commitId + " to GitBucket");
+        GitBucketCommitStatusClient.get().submit(new Status(
+                statusesUrl, state, getContext(), targetUrl, description,
+                token != null ? Secret.toString(token) : null));
+    }
+
+    private static String getCommitId(AbstractBuild<?, ?> build) {
+        GitBucketPushCause cause = GitBucketPushTrigger.getNewestPushCause(build.getCauses());
+        if (cause != null && cause.getCommitId() != null) {
+            return cause.getCommitId();
+        }
+        BuildData data = build.getAction(BuildData.class);
+        if (data != null) {
+            Revision revision = data.getLastBuiltRevision();
+            if (revision != null) {
+                return revision.getSha1String();
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Converts the repository url of GitBucket to the statuses API url of the commit.
+     *
+     * e.g. http://host/gitbucket/owner/repo to http://host/gitbucket/api/v3/repos/owner/repo/statuses/sha
+     *
+     * @return the statuses API url, or null if the url has no owner and repository.
+     */
+    static String getStatusesUrl(String url, String commitId) {
+        String u = GitBucketUtil.trimEndSlash(url);
+        if (u == null) {
+            return null;
+        }
+        int host = u.indexOf("://");
+        int repo = u.lastIndexOf('/');
+        int owner = repo > 0 ? u.lastIndexOf('/', repo - 1) : -1;
+        // the owner must follow the host, and the repository must not be empty
+        if (host < 0 || owner <= host + 2 || owner + 1 == repo || repo + 1 == u.length()) {
+            return null;
+        }
+        return u.substring(0, owner) + "/api/v3/repos" + u.substring(owner) + "/statuses/" + commitId;
+    }
+
+    /**
+     * Stops sending the statuses before Jenkins stops.
+     */
+    @Terminator
+    public static void shutdownClient() {
+        GitBucketCommitStatusClient.get().shutdown();
+    }
+
+    private static final String DEFAULT_CONTEXT = "continuous-integration/jenkins";
+
+    @Extension
+    public static class DescriptorImpl extends BuildStepDescriptor<Publisher> {
+
+        private Secret apiToken;
+
+        public DescriptorImpl() {
+            load();
+        }
+
+        public Secret getApiToken() {
+            return apiToken;
+        }
+
+        public void setApiToken(Secret apiToken) {
+            this.apiToken = apiToken;
+        }
+
+        @Override
+        public boolean configure(StaplerRequest req, JSONObject json) throws FormException {
+            req.bindJSON(this, json);
+            save();
+            return true;
+        }
+
+        @Override
+        public boolean isApplicable(Class<? extends AbstractProject> jobType) {
+            return true;
+        }
+
+        @Override
+        public String getDisplayName() {
+            return "Report the build status to GitBucket";
+        }
+    }
+
+    /**
+     * Reports pending when the build starts.
+     */
+    @Extension
+    public static class RunListenerImpl extends RunListener<AbstractBuild> {
+
+        @Override
+        public void onStarted(AbstractBuild build, TaskListener listener) {
+            AbstractProject<?, ?> job = build.getProject();
+            GitBucketCommitStatusPublisher publisher
+                    = job.getPublishersList().get(GitBucketCommitStatusPublisher.class);
+            if (publisher == null) {
+                return;
+            }
+            GitBucketPushCause cause = GitBucketPushTrigger.getNewestPushCause(build.getCauses());
+            if (cause == null || cause.getCommitId() == null) {
+                // the commit is unknown until the checkout.
+                return;
+            }
+            publisher.submit(build, "pending", listener);
+        }
+    }
+
+    private static final Logger LOGGER = Logger.getLogger(GitBucketCommitStatusPublisher.class.getName());
+}
@@ -0,0 +1,192 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2016, Seiji Sogabe
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.jenkinsci.plugins.gitbucket;
+
+import hudson.XmlFile;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.UUID;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import jenkins.model.Jenkins;
+
+/**
+ * Pushes whose polling kept failing after all the retries.
+ *
+ * Saved in gitbucket-dead-letters.xml of JENKINS_HOME, so that they can be
+ * retried or dismissed from the UI after Jenkins restarts.
+ */
+public final class GitBucketDeadLetters {
+
+    static final String FILE_NAME = "gitbucket-dead-letters.xml";
+
+    static final int MAX_ENTRIES = 100;
+
+    private static GitBucketDeadLetters instance;
+
+    // newest first
+    private final LinkedList<Entry> entries = new LinkedList<Entry>();
+
+    private transient XmlFile file;
+
+    private GitBucketDeadLetters() {
+    }
+
+    static synchronized GitBucketDeadLetters get() {
+        if (instance == null) {
+            instance = load(Jenkins.getInstance().getRootDir());
+        }
+        return instance;
+    }
+
+    static GitBucketDeadLetters load(File dir) {
+        XmlFile file = new XmlFile(Jenkins.XSTREAM2, new File(dir, FILE_NAME));
+        GitBucketDeadLetters letters = null;
+        if (file.exists()) {
+            try {
+                letters = (GitBucketDeadLetters) file.read();
+            } catch (IOException e) {
+                LOGGER.log(Level.WARNING, "Failed to load " + file, e);
+            }
+        }
+        if (letters == null) {
+            letters = new GitBucketDeadLetters();
+        }
+        letters.file = file;
+        return letters;
+    }
+
+    synchronized Entry add(String jobName, GitBucketPushRequest request, int attempts, String reason, long now) {
+        Entry entry = new Entry(jobName, request, attempts, reason, now);
+        entries.addFirst(entry);
+        while (entries.size() > MAX_ENTRIES) {
+            entries.removeLast();
+        }
+        save();
+        return entry;
+    }
+
+    /**
+     * @return the entry, or null if not found.
+     */
+    synchronized Entry get(String id) {
+        for (Entry entry : entries) {
+            if (entry.id.equals(id)) {
+                return entry;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Removes the entry.
+     *
+     * @return the removed entry, or null if not found.
+     */
+    synchronized Entry remove(String id) {
+        for (Iterator<Entry> it = entries.iterator(); it.hasNext();) {
+            Entry entry = it.next();
+            if (entry.id.equals(id)) {
+                it.remove();
+                save();
+                return entry;
+            }
+        }
+        return null;
+    }
+
+    public synchronized List<Entry> getEntries() {
+        return Collections.unmodifiableList(new ArrayList<Entry>(entries));
+    }
+
+    private void save() {
+        try {
+            file.write(this);
+        } catch (IOException e) {
+            LOGGER.log(Level.WARNING, "Failed to save " + file, e);
+        }
+    }
+
+    public static final class Entry {
+
+        private final String id = UUID.randomUUID().toString();
+
+        private final String jobName;
+
+        private final GitBucketPushRequest request;
+
+        private final int attempts;
+
+        private final String reason;
+
+        private final long failedAt;
+
+        Entry(String jobName, GitBucketPushRequest request, int attempts, String reason, long failedAt) {
+            this.jobName = jobName;
+            this.request = request;
+            this.attempts = attempts;
+            this.reason = reason;
+            this.failedAt = failedAt;
+        }
+
+        public String getId() {
+            return id;
+        }
+
+        /**
+         * @return the full name of the job.
+         */
+        public String getJobName() {
+            return jobName;
+        }
+
+        public GitBucketPushRequest getRequest() {
+            return request;
+        }
+
+        public int getAttempts() {
+            return attempts;
+        }
+
+        public String getReason() {
+            return reason;
+        }
+
+        public long getFailedAt() {
+            return failedAt;
+        }
+
+        public Date getFailedTime() {
+            return new Date(failedAt);
+        }
+    }
+
+    private static final Logger LOGGER = Logger.getLogger(GitBucketDeadLetters.class.getName());
+}
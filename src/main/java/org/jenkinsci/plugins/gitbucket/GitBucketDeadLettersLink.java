@@ -0,0 +1,101 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2016, Seiji Sogabe
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.jenkinsci.plugins.gitbucket;
+
+import hudson.Extension;
+import hudson.model.AbstractProject;
+import hudson.model.ManagementLink;
+import java.util.List;
+import jenkins.model.Jenkins;
+import org.jenkinsci.plugins.gitbucket.GitBucketDeadLetters.Entry;
+import org.kohsuke.stapler.HttpResponse;
+import org.kohsuke.stapler.HttpResponses;
+import org.kohsuke.stapler.QueryParameter;
+import org.kohsuke.stapler.interceptor.RequirePOST;
+
+/**
+ * Lists the pushes whose polling kept failing, so that they can be retried
+ * once GitBucket is back.
+ */
+@Extension
+public class GitBucketDeadLettersLink extends ManagementLink {
+
+    @Override
+    public String getIconFileName() {
+        return "/plugin/gitbucket/images/24x24/gitbucket.png";
+    }
+
+    @Override
+    public String getDisplayName() {
+        return "GitBucket Failed Pushes";
+    }
+
+    @Override
+    public String getDescription() {
+        return "Pushes which could not be polled after all the retries.";
+    }
+
+    @Override
+    public String getUrlName() {
+        return "gitbucket-failed-pushes";
+    }
+
+    public List<Entry> getEntries() {
+        return GitBucketDeadLetters.get().getEntries();
+    }
+
+    /**
+     * Polls the job for the push again.
+     */
+    @RequirePOST
+    public HttpResponse doRetry(@QueryParameter String id) {
+        Jenkins.getInstance().checkPermission(Jenkins.ADMINISTER);
+        Entry entry = GitBucketDeadLetters.get().get(id);
+        if (entry == null) {
+            return HttpResponses.redirectToDot();
+        }
+        AbstractProject<?, ?> job = Jenkins.getInstance().getItemByFullName(entry.getJobName(), AbstractProject.class);
+        GitBucketPushTrigger trigger = job != null ? job.getTrigger(GitBucketPushTrigger.class) : null;
+        if (trigger == null) {
+            // kept so that it can be dismissed or retried once the job is fixed
+            return HttpResponses.error(404, entry.getJobName() + " is no longer triggered by GitBucket");
+        }
+        // already retried or dismissed meanwhile
+        if (GitBucketDeadLetters.get().remove(id) == null) {
+            return HttpResponses.redirectToDot();
+        }
+        GitBucketPushRequest request = entry.getRequest();
+        // measure the latency from the retry
+        request.setReceivedAt(0);
+        trigger.onPost(request);
+        return HttpResponses.redirectToDot();
+    }
+
+    @RequirePOST
+    public HttpResponse doDismiss(@QueryParameter String id) {
+        Jenkins.getInstance().checkPermission(Jenkins.ADMINISTER);
+        GitBucketDeadLetters.get().remove(id);
+        return HttpResponses.redirectToDot();
+    }
+}
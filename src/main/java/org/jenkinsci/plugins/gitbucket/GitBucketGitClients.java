@@ -0,0 +1,86 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2016, Seiji Sogabe
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.jenkinsci.plugins.gitbucket;
+
+import com.cloudbees.plugins.credentials.CredentialsMatchers;
+import com.cloudbees.plugins.credentials.CredentialsProvider;
+import com.cloudbees.plugins.credentials.common.StandardCredentials;
+import com.cloudbees.plugins.credentials.domains.URIRequirementBuilder;
+import hudson.EnvVars;
+import hudson.FilePath;
+import hudson.model.Item;
+import hudson.model.Node;
+import hudson.model.TaskListener;
+import hudson.plugins.git.GitTool;
+import hudson.security.ACL;
+import java.io.File;
+import java.io.IOException;
+import org.jenkinsci.plugins.gitclient.Git;
+import org.jenkinsci.plugins.gitclient.GitClient;
+
+/**
+ * Creates the git clients used by the plugin itself.
+ */
+final class GitBucketGitClients {
+
+    private GitBucketGitClients() {
+    }
+
+    /**
+     * Creates the client for the repository on the master.
+     */
+    static GitClient create(File dir, TaskListener listener) throws IOException, InterruptedException {
+        GitTool tool = GitTool.getDefaultInstallation();
+        String exe = tool != null ? tool.getGitExe() : "git";
+        return Git.with(listener, new EnvVars()).in(dir).using(exe).getClient();
+    }
+
+    /**
+     * Creates the client for the repository on the node.
+     */
+    static GitClient create(FilePath dir, Node node, TaskListener listener)
+            throws IOException, InterruptedException {
+        GitTool tool = GitTool.getDefaultInstallation();
+        String exe = "git";
+        if (tool != null) {
+            exe = tool.forNode(node, listener).getGitExe();
+        }
+        return Git.with(listener, new EnvVars()).in(dir).using(exe).getClient();
+    }
+
+    /**
+     * Looks up the credentials configured for the remote of the item.
+     *
+     * @return the credentials, or null if not configured or not found.
+     */
+    static StandardCredentials lookupCredentials(Item item, String url, String credentialsId) {
+        if (credentialsId == null) {
+            return null;
+        }
+        return CredentialsMatchers.firstOrNull(
+                CredentialsProvider.lookupCredentials(StandardCredentials.class, item, ACL.SYSTEM,
+                        URIRequirementBuilder.fromUri(url).build()),
+                CredentialsMatchers.withId(credentialsId));
+    }
+}
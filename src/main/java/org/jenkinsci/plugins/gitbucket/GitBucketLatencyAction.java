@@ -0,0 +1,165 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2016, Seiji Sogabe
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.jenkinsci.plugins.gitbucket;
+
+import hudson.Extension;
+import hudson.model.AbstractProject;
+import hudson.model.Action;
+import hudson.model.Run;
+import hudson.model.TransientProjectActionFactory;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import org.jenkinsci.plugins.gitbucket.GitBucketPushTrigger.GitBucketPushCause;
+
+/**
+ * Shows how long the recent pushes took to start the builds of a job, stage
+ * by stage.
+ *
+ * Computed from the causes of the recent builds when the page is opened.
+ */
+public class GitBucketLatencyAction implements Action {
+
+    static final int MAX_BUILDS = 100;
+
+    private final AbstractProject<?, ?> owner;
+
+    GitBucketLatencyAction(AbstractProject<?, ?> owner) {
+        this.owner = owner;
+    }
+
+    public AbstractProject<?, ?> getOwner() {
+        return owner;
+    }
+
+    @Override
+    public String getIconFileName() {
+        return "/plugin/gitbucket/images/24x24/gitbucket.png";
+    }
+
+    @Override
+    public String getDisplayName() {
+        return "GitBucket Push Latency";
+    }
+
+    @Override
+    public String getUrlName() {
+        return "gitbucketLatency";
+    }
+
+    public List<Sample> getSamples() {
+        List<Sample> samples = new ArrayList<Sample>();
+        for (Run<?, ?> build : owner.getBuilds().limit(MAX_BUILDS)) {
+            samples.addAll(Sample.of(build));
+        }
+        return samples;
+    }
+
+    public GitBucketLatencyStats getStats() {
+        List<long[]> durations = new ArrayList<long[]>();
+        for (Sample sample : getSamples()) {
+            durations.add(sample.getDurations());
+        }
+        return new GitBucketLatencyStats(durations);
+    }
+
+    public String[] getStageNames() {
+        return GitBucketPushTimings.STAGES.clone();
+    }
+
+    /**
+     * The stages a push went through before its build started.
+     *
+     * Refers to the build by name, so that the build can be unloaded.
+     */
+    public static class Sample {
+
+        private final String buildName;
+
+        private final String buildUrl;
+
+        private final String deliveryId;
+
+        private final long[] durations;
+
+        Sample(String buildName, String buildUrl, String deliveryId, long[] durations) {
+            this.buildName = buildName;
+            this.buildUrl = buildUrl;
+            this.deliveryId = deliveryId;
+            this.durations = durations;
+        }
+
+        /**
+         * Returns the samples of the pushes which triggered the started build.
+         */
+        static List<Sample> of(Run<?, ?> build) {
+            if (build.getStartTimeInMillis() == 0) {
+                return Collections.emptyList();
+            }
+            List<Sample> samples = new ArrayList<Sample>();
+            for (Object cause : build.getCauses()) {
+                if (cause instanceof GitBucketPushCause) {
+                    GitBucketPushCause c = (GitBucketPushCause) cause;
+                    if (c.getTimings() != null) {
+                        samples.add(new Sample(build.getFullDisplayName(), build.getUrl(), c.getDeliveryId(),
+                                c.getTimings().getDurations(build.getStartTimeInMillis())));
+                    }
+                }
+            }
+            return samples;
+        }
+
+        public String getBuildName() {
+            return buildName;
+        }
+
+        /**
+         * @return the url of the build relative to the root of Jenkins.
+         */
+        public String getBuildUrl() {
+            return buildUrl;
+        }
+
+        public String getDeliveryId() {
+            return deliveryId;
+        }
+
+        public long[] getDurations() {
+            return durations.clone();
+        }
+    }
+
+    @Extension
+    public static class Factory extends TransientProjectActionFactory {
+
+        @Override
+        public Collection<? extends Action> createFor(AbstractProject target) {
+            if (target.getTrigger(GitBucketPushTrigger.class) == null) {
+                return Collections.emptyList();
+            }
+            return Collections.singletonList(new GitBucketLatencyAction(target));
+        }
+    }
+}
@@ -0,0 +1,130 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2016, Seiji Sogabe
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.jenkinsci.plugins.gitbucket;
+
+import hudson.Extension;
+import hudson.model.ManagementLink;
+import hudson.model.Run;
+import hudson.model.TaskListener;
+import hudson.model.listeners.RunListener;
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import jenkins.model.Jenkins;
+import org.jenkinsci.plugins.gitbucket.GitBucketLatencyAction.Sample;
+
+/**
+ * Shows how long the recent pushes took to start the builds of all the jobs,
+ * stage by stage.
+ *
+ * The samples are kept in memory as the builds start, so they are lost when
+ * Jenkins restarts. The page of each job reads its builds instead.
+ */
+@Extension
+public class GitBucketLatencyLink extends ManagementLink {
+
+    static final int MAX_SAMPLES = 1000;
+
+    private static final AtomicLong TIMED_OUT_POLLS = new AtomicLong();
+
+    private final LinkedList<Sample> samples = new LinkedList<Sample>();
+
+    @Override
+    public String getIconFileName() {
+        return "/plugin/gitbucket/images/24x24/gitbucket.png";
+    }
+
+    @Override
+    public String getDisplayName() {
+        return "GitBucket Push Latency";
+    }
+
+    @Override
+    public String getDescription() {
+        return "Time from the GitBucket pushes to the start of their builds, stage by stage.";
+    }
+
+    @Override
+    public String getUrlName() {
+        return "gitbucket-latency";
+    }
+
+    void record(List<Sample> started) {
+        synchronized (samples) {
+            for (Sample sample : started) {
+                samples.addFirst(sample);
+            }
+            while (samples.size() > MAX_SAMPLES) {
+                samples.removeLast();
+            }
+        }
+    }
+
+    public List<Sample> getSamples() {
+        synchronized (samples) {
+            return new ArrayList<Sample>(samples);
+        }
+    }
+
+    public GitBucketLatencyStats getStats() {
+        List<long[]> durations = new ArrayList<long[]>();
+        for (Sample sample : getSamples()) {
+            durations.add(sample.getDurations());
+        }
+        return new GitBucketLatencyStats(durations);
+    }
+
+    /**
+     * Counts the polling interrupted by the timeout.
+     */
+    static void recordTimedOutPoll() {
+        TIMED_OUT_POLLS.incrementAndGet();
+    }
+
+    public long getTimedOutPolls() {
+        return TIMED_OUT_POLLS.get();
+    }
+
+    public String[] getStageNames() {
+        return GitBucketPushTimings.STAGES.clone();
+    }
+
+    @Extension
+    public static class RunListenerImpl extends RunListener<Run<?, ?>> {
+
+        @Override
+        public void onStarted(Run<?, ?> r, TaskListener listener) {
+            List<Sample> started = Sample.of(r);
+            if (started.isEmpty()) {
+                return;
+            }
+            GitBucketLatencyLink link = Jenkins.getInstance().getExtensionList(ManagementLink.class)
+                    .get(GitBucketLatencyLink.class);
+            if (link != null) {
+                link.record(started);
+            }
+        }
+    }
+}
@@ -0,0 +1,114 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2016, Seiji Sogabe
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.jenkinsci.plugins.gitbucket;
+
+import hudson.Util;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Percentiles of the time spent in each stage from a push to its build.
+ */
+public class GitBucketLatencyStats {
+
+    private final int count;
+
+    private final List<Stage> stages;
+
+    /**
+     * @param samples the durations of {@link GitBucketPushTimings#STAGES} of each push
+     */
+    GitBucketLatencyStats(Collection<long[]> samples) {
+        count = samples.size();
+        List<Stage> list = new ArrayList<Stage>();
+        for (int i = 0; i < GitBucketPushTimings.STAGES.length; i++) {
+            long[] values = new long[count];
+            int n = 0;
+            for (long[] sample : samples) {
+                values[n++] = sample[i];
+            }
+            Arrays.sort(values);
+            list.add(new Stage(GitBucketPushTimings.STAGES[i], values));
+        }
+        stages = Collections.unmodifiableList(list);
+    }
+
+    public int getCount() {
+        return count;
+    }
+
+    public List<Stage> getStages() {
+        return stages;
+    }
+
+    public String format(long millis) {
+        return Util.getTimeSpanString(millis);
+    }
+
+    /**
+     * Returns the nearest-rank percentile of the sorted values, or 0 if empty.
+     */
+    static long percentile(long[] sorted, double p) {
+        if (sorted.length == 0) {
+            return 0;
+        }
+        int rank = (int) Math.ceil(p / 100 * sorted.length);
+        return sorted[Math.min(Math.max(rank, 1), sorted.length) - 1];
+    }
+
+    public static class Stage {
+
+        private final String name;
+
+        private final long[] sorted;
+
+        Stage(String name, long[] sorted) {
+            this.name = name;
+            this.sorted = sorted;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public long getMedian() {
+            return percentile(sorted, 50);
+        }
+
+        public long getP90() {
+            return percentile(sorted, 90);
+        }
+
+        public long getP99() {
+            return percentile(sorted, 99);
+        }
+
+        public long getMax() {
+            return percentile(sorted, 100);
+        }
+    }
+}
@@ -25,12 +25,18 @@ package org.jenkinsci.plugins.gitbucket;
 
 import hudson.Extension;
 import hudson.MarkupText;
-import hudson.MarkupText.SubText;
+import hudson.Util;
 import hudson.model.AbstractBuild;
 import hudson.model.Run;
 import hudson.scm.ChangeLogAnnotator;
 import hudson.scm.ChangeLogSet;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.regex.Matcher;
 import java.util.regex.Pattern;
+import jenkins.model.Jenkins;
 
 /**
  * Creates HTML link for GitBucket issues.
@@ -51,7 +57,11 @@ public class GitBucketLinkAnnotator extends ChangeLogAnnotator {
         }
 
         String url = gpp.getUrl();
-        annotate(text, url + '/');
+        if (gpp.getLinkRules().isEmpty()) {
+            annotate(text, url + '/');
+        } else {
+            annotate(text, url + '/', gpp.getLinkMarkup());
+        }
     }
 
     @Deprecated
@@ -61,44 +71,143 @@ public class GitBucketLinkAnnotator extends ChangeLogAnnotator {
     }
 
     void annotate(MarkupText text, String url) {
-        for (LinkMarkup markup : MARKUPS) {
-            markup.process(text, url);
+        annotate(text, url, getGlobalMarkup());
+    }
+
+    void annotate(MarkupText text, String url, LinkMarkup markup) {
+        markup.process(text, url);
+    }
+
+    /**
+     * Returns the markup of the built-in and the global link rules.
+     */
+    static LinkMarkup getGlobalMarkup() {
+        Jenkins jenkins = Jenkins.getInstance();
+        if (jenkins == null) {
+            return DEFAULT_MARKUP;
         }
+        GitBucketProjectProperty.DescriptorImpl descriptor
+                = jenkins.getDescriptorByType(GitBucketProjectProperty.DescriptorImpl.class);
+        return descriptor != null ? descriptor.getLinkMarkup() : DEFAULT_MARKUP;
     }
 
-    private static final LinkMarkup[] MARKUPS = new LinkMarkup[]{
-        new LinkMarkup("close\\s+#?(\\d+)", "issues/$1"),
-        new LinkMarkup("closes\\s+#?(\\d+)", "issues/$1"),
-        new LinkMarkup("closed\\s+#?(\\d+)", "issues/$1"),
-        new LinkMarkup("fix\\s+#?(\\d+)", "issues/$1"),
-        new LinkMarkup("fixes\\s+#?(\\d+)", "issues/$1"),
-        new LinkMarkup("fixed\\s+#?(\\d+)", "issues/$1"),
-        new LinkMarkup("resolve\\s+#?(\\d+)", "issues/$1"),
-        new LinkMarkup("resolves\\s+#?(\\d+)", "issues/$1"),
-        new LinkMarkup("resolved\\s+#?(\\d+)", "issues/$1"),
-        new LinkMarkup("refs\\s+#?(\\d+)", "issues/$1"),
-        new LinkMarkup("issue\\s+#?(\\d+)", "issues/$1"),
-        new LinkMarkup("pull\\s+#?(\\d+)", "pulls/$1"),
-        new LinkMarkup("wiki\\s+(\\w+)", "wiki/$1")
-    };
-
-    private static final class LinkMarkup {
+    static final List<GitBucketLinkRule> DEFAULT_RULES = Collections.unmodifiableList(Arrays.asList(
+        new GitBucketLinkRule("close\\s+#?(\\d+)", "issues/$1"),
+        new GitBucketLinkRule("closes\\s+#?(\\d+)", "issues/$1"),
+        new GitBucketLinkRule("closed\\s+#?(\\d+)", "issues/$1"),
+        new GitBucketLinkRule("fix\\s+#?(\\d+)", "issues/$1"),
+        new GitBucketLinkRule("fixes\\s+#?(\\d+)", "issues/$1"),
+        new GitBucketLinkRule("fixed\\s+#?(\\d+)", "issues/$1"),
+        new GitBucketLinkRule("resolve\\s+#?(\\d+)", "issues/$1"),
+        new GitBucketLinkRule("resolves\\s+#?(\\d+)", "issues/$1"),
+        new GitBucketLinkRule("resolved\\s+#?(\\d+)", "issues/$1"),
+        new GitBucketLinkRule("refs\\s+#?(\\d+)", "issues/$1"),
+        new GitBucketLinkRule("issue\\s+#?(\\d+)", "issues/$1"),
+        new GitBucketLinkRule("pull\\s+#?(\\d+)", "pulls/$1"),
+        new GitBucketLinkRule("wiki\\s+(\\w+)", "wiki/$1")
+    ));
+
+    static final LinkMarkup DEFAULT_MARKUP = new LinkMarkup(DEFAULT_RULES);
+
+    /**
+     * All link rules compiled into a single pattern, so that the text is
+     * scanned once regardless of the number of the rules.
+     *
+     * Only the built-in rules ignore case. A link goes to an http or https
+     * url, or to a url relative to the GitBucket repository.
+     */
+    static final class LinkMarkup {
 
         private final Pattern pattern;
 
-        private final String href;
+        private final String[] hrefs;
+
+        // index of the group which encloses each rule
+        private final int[] groups;
 
-        LinkMarkup(String pattern, String href) {
-            this.pattern = Pattern.compile(pattern, Pattern.CASE_INSENSITIVE);
-            this.href = href;
+        LinkMarkup(List<GitBucketLinkRule> rules) {
+            List<String> hrefList = new ArrayList<String>();
+            List<Integer> groupList = new ArrayList<Integer>();
+            StringBuilder regex = new StringBuilder();
+            int group = 1;
+            for (GitBucketLinkRule rule : rules) {
+                if (!rule.isValid()) {
+                    continue;
+                }
+                if (regex.length() > 0) {
+                    regex.append('|');
+                }
+                if (DEFAULT_RULES.contains(rule)) {
+                    regex.append("((?i:").append(rule.getPattern()).append("))");
+                } else {
+                    regex.append('(').append(rule.getPattern()).append(')');
+                }
+                hrefList.add(rule.getHref());
+                groupList.add(group);
+                group += 1 + Pattern.compile(rule.getPattern()).matcher("").groupCount();
+            }
+            this.pattern = regex.length() > 0 ? Pattern.compile(regex.toString()) : null;
+            this.hrefs = hrefList.toArray(new String[hrefList.size()]);
+            this.groups = new int[groupList.size()];
+            for (int i = 0; i < groups.length; i++) {
+                groups[i] = groupList.get(i);
+            }
         }
 
         void process(MarkupText text, String url) {
-            for (SubText st : text.findTokens(pattern)) {
-                st.surroundWith(
-                        "<a href='" + url + href + "'>",
-                        "</a>");
+            if (pattern == null) {
+                return;
+            }
+            String s = text.getText();
+            Matcher m = pattern.matcher(s);
+            while (m.find()) {
+                // only the whole words, as MarkupText.findTokens
+                if (m.start() == m.end() || isWordChar(s, m.start() - 1) || isWordChar(s, m.end())) {
+                    continue;
+                }
+                int rule = 0;
+                while (rule < groups.length - 1 && m.start(groups[rule]) < 0) {
+                    rule++;
+                }
+                String href = expand(hrefs[rule], m, groups[rule]);
+                if (SCHEME.matcher(href).lookingAt()) {
+                    if (!HTTP_URL.matcher(href).lookingAt()) {
+                        continue;
+                    }
+                } else if (!href.startsWith("/")) {
+                    href = url + href;
+                }
+                text.addMarkup(m.start(), m.end(), "<a href='" + Util.escape(href) + "'>", "</a>");
             }
         }
+
+        private static boolean isWordChar(String s, int index) {
+            if (index < 0 || index >= s.length()) {
+                return false;
+            }
+            char ch = s.charAt(index);
+            return Character.isLetter(ch) || Character.isDigit(ch);
+        }
+
+        private static String expand(String href, Matcher m, int offset) {
+            StringBuilder buf = new StringBuilder();
+            for (int i = 0; i < href.length(); i++) {
+                char ch = href.charAt(i);
+                if (ch == '$' && i + 1 < href.length() && Character.isDigit(href.charAt(i + 1))) {
+                    int n = offset + href.charAt(++i) - '0';
+                    String value = n <= m.groupCount() ? m.group(n) : null;
+                    if (value != null) {
+                        buf.append(value);
+                    }
+                } else {
+                    buf.append(ch);
+                }
+            }
+            return buf.toString();
+        }
+
+        private static final Pattern SCHEME = Pattern.compile("[a-z][a-z0-9+.-]*:", Pattern.CASE_INSENSITIVE);
+
+        private static final Pattern HTTP_URL = Pattern.compile("https?://", Pattern.CASE_INSENSITIVE);
     }
 }
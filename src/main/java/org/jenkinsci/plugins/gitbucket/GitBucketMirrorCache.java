@@ -0,0 +1,167 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2016, Seiji Sogabe
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.jenkinsci.plugins.gitbucket;
+
+import com.cloudbees.plugins.credentials.common.StandardCredentials;
+import hudson.Util;
+import hudson.model.TaskListener;
+import hudson.plugins.git.GitException;
+import java.io.File;
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import jenkins.model.Jenkins;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.transport.RefSpec;
+import org.eclipse.jgit.transport.URIish;
+import org.jenkinsci.plugins.gitclient.GitClient;
+
+/**
+ * Local bare mirrors of the GitBucket repositories.
+ *
+ * A mirror is fetched at most once per WebHook delivery, so the jobs tracking
+ * the same repository share a single fetch and are polled from the local refs.
+ * The jobs share a mirror only if they use the same credentials, so that a job
+ * never reads a repository it could not fetch by itself.
+ */
+final class GitBucketMirrorCache {
+
+    static final String DIR_NAME = "gitbucket-mirrors";
+
+    private static GitBucketMirrorCache instance;
+
+    private final File rootDir;
+
+    private final Map<String, Mirror> mirrors = new HashMap<String, Mirror>();
+
+    GitBucketMirrorCache(File rootDir) {
+        this.rootDir = rootDir;
+    }
+
+    static synchronized GitBucketMirrorCache get() {
+        if (instance == null) {
+            instance = new GitBucketMirrorCache(new File(Jenkins.getInstance().getRootDir(), DIR_NAME));
+        }
+        return instance;
+    }
+
+    File getMirrorDir(String url, String credentialsId) {
+        return new File(rootDir, Util.getDigestOf(getKey(url, credentialsId)) + ".git");
+    }
+
+    /**
+     * Returns the key of the mirror of the repository fetched with the
+     * credentials.
+     */
+    static String getKey(String url, String credentialsId) {
+        String key = GitBucketUtil.normalizeUrl(url);
+        return credentialsId != null ? key + ' ' + credentialsId : key;
+    }
+
+    /**
+     * Fetches the mirror of the repository unless it has already been fetched
+     * for the delivery.
+     */
+    void fetch(String url, String deliveryId, StandardCredentials credentials, TaskListener listener)
+            throws IOException, InterruptedException {
+        String credentialsId = credentials != null ? credentials.getId() : null;
+        Mirror mirror = getMirror(getKey(url, credentialsId));
+        synchronized (mirror) {
+            if (deliveryId != null && deliveryId.equals(mirror.deliveryId)) {
+                listener.getLogger().println("Using the mirror fetched for " + deliveryId);
+                return;
+            }
+            File dir = getMirrorDir(url, credentialsId);
+            GitClient git = createClient(dir, listener);
+            if (credentials != null) {
+                git.addDefaultCredentials(credentials);
+            }
+            listener.getLogger().println("Fetching " + url + " into the mirror " + dir);
+            try {
+                git.fetch_().from(new URIish(url), Arrays.asList(
+                        new RefSpec("+refs/heads/*:refs/heads/*"),
+                        new RefSpec("+refs/tags/*:refs/tags/*"))).prune().execute();
+            } catch (URISyntaxException e) {
+                throw new IOException("Invalid repository url: " + url, e);
+            } catch (GitException e) {
+                throw new IOException("Failed to fetch " + url, e);
+            }
+            mirror.deliveryId = deliveryId;
+        }
+    }
+
+    /**
+     * Returns the head of the ref in the mirror fetched with the credentials,
+     * or null if not found.
+     */
+    ObjectId getHead(String url, StandardCredentials credentials, String ref, TaskListener listener)
+            throws IOException, InterruptedException {
+        String credentialsId = credentials != null ? credentials.getId() : null;
+        Mirror mirror = getMirror(getKey(url, credentialsId));
+        synchronized (mirror) {
+            File dir = getMirrorDir(url, credentialsId);
+            if (!new File(dir, "HEAD").exists()) {
+                return null;
+            }
+            try {
+                return createClient(dir, listener).revParse(ref);
+            } catch (GitException e) {
+                return null;
+            }
+        }
+    }
+
+    private Mirror getMirror(String key) {
+        synchronized (mirrors) {
+            Mirror mirror = mirrors.get(key);
+            if (mirror == null) {
+                mirror = new Mirror();
+                mirrors.put(key, mirror);
+            }
+            return mirror;
+        }
+    }
+
+    // must be called with the lock of the mirror
+    private static GitClient createClient(File dir, TaskListener listener)
+            throws IOException, InterruptedException {
+        boolean exists = new File(dir, "HEAD").exists();
+        if (!exists && !dir.isDirectory() && !dir.mkdirs()) {
+            throw new IOException("Failed to create " + dir);
+        }
+        GitClient git = GitBucketGitClients.create(dir, listener);
+        if (!exists) {
+            git.init_().workspace(dir.getAbsolutePath()).bare(true).execute();
+        }
+        return git;
+    }
+
+    private static final class Mirror {
+
+        // the delivery the mirror was last fetched for
+        private String deliveryId;
+    }
+}
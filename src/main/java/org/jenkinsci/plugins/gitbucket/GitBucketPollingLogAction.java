@@ -0,0 +1,191 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2016, Seiji Sogabe
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.jenkinsci.plugins.gitbucket;
+
+import hudson.Extension;
+import hudson.console.AnnotatedLargeText;
+import hudson.model.Action;
+import hudson.model.Cause;
+import hudson.model.Run;
+import hudson.model.TaskListener;
+import hudson.model.listeners.RunListener;
+import hudson.util.ByteBuffer;
+import java.io.File;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import jenkins.model.TransientActionFactory;
+import org.jenkinsci.plugins.gitbucket.GitBucketPushTrigger.GitBucketPushCause;
+
+/**
+ * Shows the polling log of a delivery which triggered the build.
+ *
+ * The deliveries polled together share a single copy of the log, which is
+ * archived in the job directory and moved into the build directory when the
+ * build starts. The log is read only when the page is opened.
+ */
+public class GitBucketPollingLogAction implements Action {
+
+    private final Run<?, ?> owner;
+
+    private final String deliveryId;
+
+    private final String logId;
+
+    private final boolean onlyDelivery;
+
+    GitBucketPollingLogAction(Run<?, ?> owner, String deliveryId, String logId, boolean onlyDelivery) {
+        this.owner = owner;
+        this.deliveryId = deliveryId;
+        this.logId = logId;
+        this.onlyDelivery = onlyDelivery;
+    }
+
+    public Run<?, ?> getOwner() {
+        return owner;
+    }
+
+    public String getDeliveryId() {
+        return deliveryId;
+    }
+
+    @Override
+    public String getIconFileName() {
+        return "/plugin/gitbucket/images/24x24/gitbucket-log.png";
+    }
+
+    @Override
+    public String getDisplayName() {
+        return onlyDelivery ? "GitBucket Polling Log" : "GitBucket Polling Log (" + deliveryId + ")";
+    }
+
+    @Override
+    public String getUrlName() {
+        return onlyDelivery ? "gitbucketPollingLog" : "gitbucketPollingLog-" + deliveryId;
+    }
+
+    public File getLogFile() {
+        File file = GitBucketPushTrigger.getPollingLogFile(owner.getRootDir(), logId);
+        if (file.exists()) {
+            return file;
+        }
+        // the build has not started yet, or was triggered by an older version
+        return GitBucketPushTrigger.getPollingLogFile(owner.getParent().getRootDir(), logId);
+    }
+
+    public boolean isLogAvailable() {
+        File logFile = getLogFile();
+        return GitBucketPollingLogWriter.get().getBuffer(logFile) != null || logFile.length() > 0;
+    }
+
+    public AnnotatedLargeText<GitBucketPollingLogAction> getLogText() {
+        File logFile = getLogFile();
+        ByteBuffer buffer = GitBucketPollingLogWriter.get().getBuffer(logFile);
+        if (buffer != null) {
+            return new AnnotatedLargeText<GitBucketPollingLogAction>(
+                    buffer, Charset.defaultCharset(), true, this);
+        }
+        return new AnnotatedLargeText<GitBucketPollingLogAction>(
+                logFile, Charset.defaultCharset(), true, this);
+    }
+
+    /**
+     * Returns the causes referring to the archived polling logs.
+     */
+    static List<GitBucketPushCause> getPushCauses(List<? extends Cause> causes) {
+        List<GitBucketPushCause> pushCauses = new ArrayList<GitBucketPushCause>();
+        Set<String> deliveryIds = new LinkedHashSet<String>();
+        for (Cause cause : causes) {
+            if (cause instanceof GitBucketPushCause) {
+                GitBucketPushCause pushCause = (GitBucketPushCause) cause;
+                if (pushCause.getDeliveryId() != null && deliveryIds.add(pushCause.getDeliveryId())) {
+                    pushCauses.add(pushCause);
+                }
+            }
+        }
+        return pushCauses;
+    }
+
+    @Extension
+    public static class Factory extends TransientActionFactory<Run> {
+
+        @Override
+        public Class<Run> type() {
+            return Run.class;
+        }
+
+        @Override
+        public Collection<? extends Action> createFor(Run target) {
+            List<GitBucketPushCause> causes = getPushCauses(target.getCauses());
+            List<Action> actions = new ArrayList<Action>();
+            for (GitBucketPushCause cause : causes) {
+                actions.add(new GitBucketPollingLogAction(
+                        target, cause.getDeliveryId(), cause.getPollingLogId(), causes.size() == 1));
+            }
+            return actions;
+        }
+    }
+
+    /**
+     * Moves the polling logs into the build directory, so the logs are kept as
+     * long as the build.
+     */
+    @Extension
+    public static class RunListenerImpl extends RunListener<Run<?, ?>> {
+
+        @Override
+        public void onStarted(Run<?, ?> r, TaskListener listener) {
+            Set<String> logIds = new LinkedHashSet<String>();
+            for (GitBucketPushCause cause : getPushCauses(r.getCauses())) {
+                logIds.add(cause.getPollingLogId());
+            }
+            if (logIds.isEmpty()) {
+                return;
+            }
+            // the log may not have been written yet
+            GitBucketPollingLogWriter.get().flush();
+            for (String logId : logIds) {
+                File src = GitBucketPushTrigger.getPollingLogFile(r.getParent().getRootDir(), logId);
+                File dst = GitBucketPushTrigger.getPollingLogFile(r.getRootDir(), logId);
+                if (!src.exists()) {
+                    continue;
+                }
+                if (!dst.getParentFile().isDirectory() && !dst.getParentFile().mkdirs()) {
+                    LOGGER.log(Level.WARNING, "Failed to create {0}", dst.getParentFile());
+                    return;
+                }
+                if (!src.renameTo(dst)) {
+                    LOGGER.log(Level.WARNING, "Failed to move {0} to {1}", new Object[]{src, dst});
+                }
+            }
+        }
+    }
+
+    private static final Logger LOGGER = Logger.getLogger(GitBucketPollingLogAction.class.getName());
+}
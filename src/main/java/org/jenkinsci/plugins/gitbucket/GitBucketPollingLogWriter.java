@@ -0,0 +1,188 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2016, Seiji Sogabe
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.jenkinsci.plugins.gitbucket;
+
+import hudson.util.ByteBuffer;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import jenkins.util.Timer;
+
+/**
+ * Keeps the polling logs in memory and writes them to the job directories in
+ * the background.
+ *
+ * Each poll overwrites the log of the job, so only the latest log of a job
+ * waiting to be written is kept, and a burst of pushes results in a single
+ * write per job. When the logs waiting to be written exceed the limit, the
+ * caller writes them synchronously. The logs are also written on shutdown.
+ */
+final class GitBucketPollingLogWriter {
+
+    private static GitBucketPollingLogWriter instance;
+
+    // the logs of the polls in progress
+    private final Map<File, ByteBuffer> running = new HashMap<File, ByteBuffer>();
+
+    // the logs waiting to be written
+    private final Map<File, ByteBuffer> pending = new LinkedHashMap<File, ByteBuffer>();
+
+    private final Object writeLock = new Object();
+
+    private final ScheduledExecutorService executor;
+
+    private final long flushDelay;
+
+    private final long maxPendingBytes;
+
+    private long pendingBytes;
+
+    private boolean scheduled;
+
+    GitBucketPollingLogWriter(ScheduledExecutorService executor, long flushDelay, long maxPendingBytes) {
+        this.executor = executor;
+        this.flushDelay = flushDelay;
+        this.maxPendingBytes = maxPendingBytes;
+    }
+
+    static synchronized GitBucketPollingLogWriter get() {
+        if (instance == null) {
+            instance = new GitBucketPollingLogWriter(Timer.get(),
+                    Long.getLong(GitBucketPollingLogWriter.class.getName() + ".flushDelay", 1000),
+                    Long.getLong(GitBucketPollingLogWriter.class.getName() + ".maxPendingBytes", 16 * 1024 * 1024));
+        }
+        return instance;
+    }
+
+    /**
+     * Returns a new buffer for the log of a poll about to start.
+     */
+    ByteBuffer open(File file) {
+        ByteBuffer buffer = new ByteBuffer();
+        synchronized (this) {
+            running.put(file, buffer);
+        }
+        return buffer;
+    }
+
+    /**
+     * Queues the log of the finished poll to be written.
+     */
+    void close(File file, ByteBuffer buffer) {
+        boolean full;
+        synchronized (this) {
+            if (running.get(file) == buffer) {
+                running.remove(file);
+            }
+            ByteBuffer old = pending.put(file, buffer);
+            if (old != null) {
+                pendingBytes -= old.length();
+            }
+            pendingBytes += buffer.length();
+            full = pendingBytes > maxPendingBytes;
+            if (!full && !scheduled) {
+                scheduled = true;
+                executor.schedule(new Runnable() {
+                    @Override
+                    public void run() {
+                        flush();
+                    }
+                }, flushDelay, TimeUnit.MILLISECONDS);
+            }
+        }
+        if (full) {
+            flush();
+        }
+    }
+
+    /**
+     * Returns the log in memory, which is the log of the poll in progress or
+     * the log not written yet, or null if the log should be read from the file.
+     */
+    synchronized ByteBuffer getBuffer(File file) {
+        ByteBuffer buffer = running.get(file);
+        return buffer != null ? buffer : pending.get(file);
+    }
+
+    /**
+     * Checks if a poll writing to the log is in progress.
+     */
+    synchronized boolean isRunning(File file) {
+        return running.containsKey(file);
+    }
+
+    synchronized long getPendingBytes() {
+        return pendingBytes;
+    }
+
+    /**
+     * Writes all the logs waiting to be written.
+     */
+    void flush() {
+        synchronized (writeLock) {
+            List<Map.Entry<File, ByteBuffer>> batch;
+            synchronized (this) {
+                scheduled = false;
+                batch = new ArrayList<Map.Entry<File, ByteBuffer>>(pending.entrySet());
+            }
+            for (Map.Entry<File, ByteBuffer> e : batch) {
+                File file = e.getKey();
+                ByteBuffer buffer = e.getValue();
+                try {
+                    write(file, buffer);
+                } catch (IOException ex) {
+                    LOGGER.log(Level.WARNING, "Failed to write the polling log " + file, ex);
+                }
+                synchronized (this) {
+                    // a newer log queued while writing stays pending
+                    if (pending.get(file) == buffer) {
+                        pending.remove(file);
+                        pendingBytes -= buffer.length();
+                    }
+                }
+            }
+        }
+    }
+
+    private static void write(File file, ByteBuffer buffer) throws IOException {
+        OutputStream out = new FileOutputStream(file);
+        try {
+            buffer.writeTo(out);
+        } finally {
+            out.close();
+        }
+    }
+
+    private static final Logger LOGGER = Logger.getLogger(GitBucketPollingLogWriter.class.getName());
+}
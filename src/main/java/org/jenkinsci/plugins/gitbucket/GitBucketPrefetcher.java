@@ -0,0 +1,122 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2016, Seiji Sogabe
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.jenkinsci.plugins.gitbucket;
+
+import com.cloudbees.plugins.credentials.common.StandardCredentials;
+import hudson.model.AbstractProject;
+import hudson.model.Computer;
+import hudson.model.Label;
+import hudson.model.Node;
+import hudson.model.TaskListener;
+import hudson.plugins.git.GitSCM;
+import hudson.plugins.git.UserRemoteConfig;
+import hudson.scm.SCM;
+import hudson.util.LogTaskListener;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Fetches the pushed repository on the nodes likely to run the triggered
+ * build, while the build waits for its quiet period and an executor.
+ *
+ * The repository is fetched into the {@link GitBucketReferenceRepository} of
+ * the node, so the jobs without it are not prefetched. The workspace is left
+ * alone: a build starting meanwhile must neither wait for the fetch nor be
+ * given another, empty workspace.
+ */
+final class GitBucketPrefetcher {
+
+    static final int MAX_NODES = 3;
+
+    private GitBucketPrefetcher() {
+    }
+
+    static void prefetch(final AbstractProject<?, ?> job) {
+        SCM scm = job.getScm();
+        if (!(scm instanceof GitSCM)) {
+            return;
+        }
+        GitSCM git = (GitSCM) scm;
+        if (git.getUserRemoteConfigs().size() != 1
+                || git.getExtensions().get(GitBucketReferenceRepository.class) == null) {
+            return;
+        }
+        final UserRemoteConfig remote = git.getUserRemoteConfigs().get(0);
+        final StandardCredentials credentials
+                = GitBucketGitClients.lookupCredentials(job, remote.getUrl(), remote.getCredentialsId());
+        for (final Node node : selectNodes(job, MAX_NODES)) {
+            // the fetch blocks on the remote, so it does not run on the shared timer
+            Computer.threadPoolForRemoting.submit(new Runnable() {
+                @Override
+                public void run() {
+                    TaskListener listener = new LogTaskListener(LOGGER, Level.FINE);
+                    try {
+                        GitBucketReferenceRepositories.get().update(node, remote.getUrl(), credentials, listener);
+                        LOGGER.log(Level.FINE, "Prefetched {0} on {1}",
+                                new Object[]{remote.getUrl(), node.getDisplayName()});
+                    } catch (IOException e) {
+                        LOGGER.log(Level.FINE, "Failed to prefetch " + job.getFullName() + " on "
+                                + node.getDisplayName(), e);
+                    } catch (InterruptedException e) {
+                        LOGGER.log(Level.FINE, "Interrupted prefetching " + job.getFullName(), e);
+                    }
+                }
+            });
+        }
+    }
+
+    /**
+     * Selects the online nodes likely to run the next build of the job: the
+     * node of the last build, and then the nodes of the assigned label.
+     */
+    static List<Node> selectNodes(AbstractProject<?, ?> job, int max) {
+        Set<Node> nodes = new LinkedHashSet<Node>();
+        Node lastBuiltOn = job.getLastBuiltOn();
+        if (lastBuiltOn != null) {
+            nodes.add(lastBuiltOn);
+        }
+        Label label = job.getAssignedLabel();
+        if (label != null) {
+            nodes.addAll(label.getNodes());
+        }
+        List<Node> selected = new ArrayList<Node>();
+        for (Node node : nodes) {
+            if (selected.size() >= max) {
+                break;
+            }
+            Computer computer = node.toComputer();
+            if (computer != null && computer.isOnline() && node.getNumExecutors() > 0) {
+                selected.add(node);
+            }
+        }
+        return selected;
+    }
+
+    private static final Logger LOGGER = Logger.getLogger(GitBucketPrefetcher.class.getName());
+}
@@ -0,0 +1,112 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2016, Seiji Sogabe
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.jenkinsci.plugins.gitbucket;
+
+import hudson.XmlFile;
+import java.io.File;
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import jenkins.model.Jenkins;
+
+/**
+ * Last head processed by a job for each ref.
+ *
+ * Saved in gitbucket-heads.xml of the job, and only when a head changes.
+ * The least recently used ref is evicted when there are too many.
+ */
+final class GitBucketProcessedHeads {
+
+    static final String FILE_NAME = "gitbucket-heads.xml";
+
+    static final int MAX_REFS = 1000;
+
+    // in access order
+    private Map<String, String> heads = newHeads();
+
+    private transient XmlFile file;
+
+    private GitBucketProcessedHeads() {
+    }
+
+    private static Map<String, String> newHeads() {
+        return new LinkedHashMap<String, String>(16, 0.75f, true);
+    }
+
+    // XStream restores the map in insertion order
+    private Object readResolve() {
+        Map<String, String> loaded = heads;
+        heads = newHeads();
+        if (loaded != null) {
+            heads.putAll(loaded);
+        }
+        return this;
+    }
+
+    static GitBucketProcessedHeads load(File dir) {
+        XmlFile file = new XmlFile(Jenkins.XSTREAM2, new File(dir, FILE_NAME));
+        GitBucketProcessedHeads heads = null;
+        if (file.exists()) {
+            try {
+                heads = (GitBucketProcessedHeads) file.read();
+            } catch (IOException e) {
+                LOGGER.log(Level.WARNING, "Failed to load " + file, e);
+            }
+        }
+        if (heads == null) {
+            heads = new GitBucketProcessedHeads();
+        }
+        heads.file = file;
+        return heads;
+    }
+
+    synchronized boolean isProcessed(String ref, String head) {
+        return head != null && head.equals(heads.get(key(ref)));
+    }
+
+    synchronized void put(String ref, String head) {
+        if (head == null || head.equals(heads.put(key(ref), head))) {
+            return;
+        }
+        if (heads.size() > MAX_REFS) {
+            Iterator<String> it = heads.keySet().iterator();
+            it.next();
+            it.remove();
+        }
+        try {
+            file.write(this);
+        } catch (IOException e) {
+            LOGGER.log(Level.WARNING, "Failed to save " + file, e);
+        }
+    }
+
+    private static String key(String ref) {
+        return ref != null ? ref : "";
+    }
+
+    private static final Logger LOGGER = Logger.getLogger(GitBucketProcessedHeads.class.getName());
+}
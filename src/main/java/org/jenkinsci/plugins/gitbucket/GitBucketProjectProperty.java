@@ -32,9 +32,16 @@ import hudson.model.Job;
 import hudson.model.JobProperty;
 import hudson.model.JobPropertyDescriptor;
 import hudson.model.Run;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.List;
+import jenkins.model.Jenkins;
+import net.sf.json.JSONObject;
+import org.jenkinsci.plugins.gitbucket.GitBucketLinkAnnotator.LinkMarkup;
 import org.kohsuke.stapler.DataBoundConstructor;
+import org.kohsuke.stapler.DataBoundSetter;
+import org.kohsuke.stapler.StaplerRequest;
 
 /**
  * Project property
@@ -47,6 +54,12 @@ public class GitBucketProjectProperty extends JobProperty<AbstractProject<?, ?>>
 
     private final boolean linkEnabled;
 
+    private List<GitBucketLinkRule> linkRules;
+
+    private transient volatile LinkMarkup linkMarkup;
+
+    private transient volatile int linkMarkupGeneration;
+
     public String getUrl() {
         return url;
     }
@@ -55,12 +68,46 @@ public class GitBucketProjectProperty extends JobProperty<AbstractProject<?, ?>>
         return linkEnabled;
     }
 
+    public List<GitBucketLinkRule> getLinkRules() {
+        if (linkRules == null) {
+            return Collections.emptyList();
+        }
+        return Collections.unmodifiableList(linkRules);
+    }
+
+    @DataBoundSetter
+    public void setLinkRules(List<GitBucketLinkRule> linkRules) {
+        this.linkRules = linkRules != null ? new ArrayList<GitBucketLinkRule>(linkRules) : null;
+        this.linkMarkup = null;
+    }
+
     @DataBoundConstructor
     public GitBucketProjectProperty(String url, boolean linkEnabled) {
         this.url = GitBucketUtil.trimEndSlash(url);
         this.linkEnabled = linkEnabled;
     }
 
+    /**
+     * Returns the markup of the built-in, the global and the project link rules.
+     */
+    LinkMarkup getLinkMarkup() {
+        Jenkins jenkins = Jenkins.getInstance();
+        DescriptorImpl descriptor = jenkins != null ? jenkins.getDescriptorByType(DescriptorImpl.class) : null;
+        int generation = descriptor != null ? descriptor.getGeneration() : 0;
+        LinkMarkup markup = linkMarkup;
+        if (markup == null || linkMarkupGeneration != generation) {
+            List<GitBucketLinkRule> rules = new ArrayList<GitBucketLinkRule>(GitBucketLinkAnnotator.DEFAULT_RULES);
+            if (descriptor != null) {
+                rules.addAll(descriptor.getLinkRules());
+            }
+            rules.addAll(getLinkRules());
+            markup = new LinkMarkup(rules);
+            linkMarkup = markup;
+            linkMarkupGeneration = generation;
+        }
+        return markup;
+    }
+
     @Override
     public Collection<? extends Action> getJobActions(AbstractProject<?, ?> job) {
         if (url == null) {
@@ -90,9 +137,59 @@ public class GitBucketProjectProperty extends JobProperty<AbstractProject<?, ?>>
     @Extension
     public static final class DescriptorImpl extends JobPropertyDescriptor {
 
+        private List<GitBucketLinkRule> linkRules;
+
+        private transient volatile LinkMarkup linkMarkup;
+
+        // incremented when the global rules change to rebuild the project markups
+        private transient volatile int generation;
+
+        public DescriptorImpl() {
+            load();
+        }
+
         @Override
         public String getDisplayName() {
             return "GitBucket";
         }
+
+        public List<GitBucketLinkRule> getLinkRules() {
+            if (linkRules == null) {
+                return Collections.emptyList();
+            }
+            return Collections.unmodifiableList(linkRules);
+        }
+
+        public void setLinkRules(List<GitBucketLinkRule> linkRules) {
+            this.linkRules = linkRules != null ? new ArrayList<GitBucketLinkRule>(linkRules) : null;
+            this.linkMarkup = null;
+            this.generation++;
+        }
+
+        int getGeneration() {
+            return generation;
+        }
+
+        /**
+         * Returns the markup of the built-in and the global link rules.
+         */
+        LinkMarkup getLinkMarkup() {
+            LinkMarkup markup = linkMarkup;
+            if (markup == null) {
+                List<GitBucketLinkRule> rules = new ArrayList<GitBucketLinkRule>(GitBucketLinkAnnotator.DEFAULT_RULES);
+                rules.addAll(getLinkRules());
+                markup = new LinkMarkup(rules);
+                linkMarkup = markup;
+            }
+            return markup;
+        }
+
+        @Override
+        public boolean configure(StaplerRequest req, JSONObject json) throws FormException {
+            setLinkRules(null);
+            req.bindJSON(this, json);
+            save();
+            return true;
+        }
     }
 }
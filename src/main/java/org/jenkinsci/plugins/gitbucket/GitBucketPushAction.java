@@ -0,0 +1,247 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2016, Seiji Sogabe
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.jenkinsci.plugins.gitbucket;
+
+import hudson.EnvVars;
+import hudson.Extension;
+import hudson.FilePath;
+import hudson.model.Action;
+import hudson.model.EnvironmentContributor;
+import hudson.model.InvisibleAction;
+import hudson.model.Queue;
+import hudson.model.Run;
+import hudson.model.TaskListener;
+import hudson.model.listeners.SCMListener;
+import hudson.model.queue.FoldableAction;
+import hudson.scm.SCM;
+import hudson.scm.SCMRevisionState;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import org.jenkinsci.plugins.gitbucket.GitBucketPushRequest.Commit;
+
+/**
+ * Records the push which triggered the build, and exposes it to the build
+ * as environment variables.
+ *
+ * The changed files are written to a file next to the workspace at checkout,
+ * and the path of the file is exposed instead of the list itself.
+ */
+public class GitBucketPushAction extends InvisibleAction implements FoldableAction {
+
+    static final String CHANGED_FILES_NAME = "gitbucket-changed-files.txt";
+
+    private final String ref;
+
+    private final String before;
+
+    private final String after;
+
+    private final String pushedBy;
+
+    private final String repository;
+
+    private final List<String> changedFiles;
+
+    private String changedFilesPath;
+
+    public GitBucketPushAction(GitBucketPushRequest req) {
+        this.ref = req.getRef();
+        this.before = req.getBefore();
+        Commit lastCommit = req.getLastCommit();
+        this.after = req.getAfter() != null ? req.getAfter() : (lastCommit != null ? lastCommit.getId() : null);
+        this.pushedBy = req.getPusher() != null ? req.getPusher().getName() : null;
+        this.repository = GitBucketPushTrigger.getRepositoryName(req);
+        this.changedFiles = collectChangedFiles(req.getCommits());
+    }
+
+    private GitBucketPushAction(GitBucketPushAction older, GitBucketPushAction newer) {
+        this.ref = newer.ref;
+        this.before = older.before;
+        this.after = newer.after;
+        this.pushedBy = newer.pushedBy;
+        this.repository = newer.repository;
+        Set<String> files = new LinkedHashSet<String>(older.getChangedFiles());
+        files.addAll(newer.getChangedFiles());
+        this.changedFiles = new ArrayList<String>(files);
+    }
+
+    /**
+     * Combines the pushes to the same ref, in the order they were pushed.
+     */
+    static GitBucketPushAction of(List<GitBucketPushRequest> requests) {
+        GitBucketPushAction action = null;
+        for (GitBucketPushRequest req : requests) {
+            GitBucketPushAction newer = new GitBucketPushAction(req);
+            action = action == null ? newer : new GitBucketPushAction(action, newer);
+        }
+        return action;
+    }
+
+    /**
+     * Combines the older push to the same ref with the newer one.
+     *
+     * @return the newer push if the older one is null or to another ref.
+     */
+    static GitBucketPushAction merge(GitBucketPushAction older, GitBucketPushAction newer) {
+        if (older == null || !isSameRef(older.ref, newer.ref)) {
+            return newer;
+        }
+        return new GitBucketPushAction(older, newer);
+    }
+
+    /**
+     * Merges the push into the queued build of the older push to the same ref.
+     */
+    @Override
+    public void foldIntoExisting(Queue.Item item, Queue.Task owner, List<Action> otherActions) {
+        GitBucketPushAction existing = item.getAction(GitBucketPushAction.class);
+        if (existing == null) {
+            item.addAction(this);
+        } else if (isSameRef(existing.ref, ref)) {
+            item.replaceAction(new GitBucketPushAction(existing, this));
+        } else {
+            item.replaceAction(this);
+        }
+    }
+
+    private static boolean isSameRef(String ref1, String ref2) {
+        return ref1 == null ? ref2 == null : ref1.equals(ref2);
+    }
+
+    public String getRef() {
+        return ref;
+    }
+
+    public String getBefore() {
+        return before;
+    }
+
+    public String getAfter() {
+        return after;
+    }
+
+    public String getPushedBy() {
+        return pushedBy;
+    }
+
+    public String getRepository() {
+        return repository;
+    }
+
+    public List<String> getChangedFiles() {
+        return changedFiles != null ? Collections.unmodifiableList(changedFiles) : Collections.<String>emptyList();
+    }
+
+    static List<String> collectChangedFiles(List<Commit> commits) {
+        Set<String> files = new LinkedHashSet<String>();
+        if (commits != null) {
+            for (Commit commit : commits) {
+                addAll(files, commit.getAdded());
+                addAll(files, commit.getModified());
+                addAll(files, commit.getRemoved());
+            }
+        }
+        return new ArrayList<String>(files);
+    }
+
+    private static void addAll(Set<String> files, List<String> paths) {
+        if (paths != null) {
+            files.addAll(paths);
+        }
+    }
+
+    void buildEnvVars(EnvVars env) {
+        put(env, "GITBUCKET_REF", ref);
+        if (ref != null && ref.startsWith("refs/heads/")) {
+            put(env, "GITBUCKET_BRANCH", ref.substring("refs/heads/".length()));
+        }
+        put(env, "GITBUCKET_BEFORE", before);
+        put(env, "GITBUCKET_AFTER", after);
+        put(env, "GITBUCKET_PUSHER", pushedBy);
+        put(env, "GITBUCKET_REPOSITORY", repository);
+        env.put("GITBUCKET_CHANGED_FILES_COUNT", Integer.toString(getChangedFiles().size()));
+        put(env, "GITBUCKET_CHANGED_FILES", changedFilesPath);
+    }
+
+    private static void put(EnvVars env, String name, String value) {
+        if (value != null) {
+            env.put(name, value);
+        }
+    }
+
+    /**
+     * Writes the changed files, one per line, next to the workspace.
+     */
+    void writeChangedFiles(FilePath workspace) throws IOException, InterruptedException {
+        FilePath parent = workspace.getParent();
+        if (parent == null) {
+            return;
+        }
+        FilePath tmp = parent.child(workspace.getName() + "@tmp");
+        tmp.mkdirs();
+        FilePath file = tmp.child(CHANGED_FILES_NAME);
+        StringBuilder buf = new StringBuilder();
+        for (String path : getChangedFiles()) {
+            buf.append(path).append('\n');
+        }
+        file.write(buf.toString(), "UTF-8");
+        changedFilesPath = file.getRemote();
+    }
+
+    @Extension
+    public static class EnvironmentContributorImpl extends EnvironmentContributor {
+
+        @Override
+        public void buildEnvironmentFor(Run r, EnvVars envs, TaskListener listener)
+                throws IOException, InterruptedException {
+            GitBucketPushAction action = r.getAction(GitBucketPushAction.class);
+            if (action != null) {
+                action.buildEnvVars(envs);
+            }
+        }
+    }
+
+    @Extension
+    public static class SCMListenerImpl extends SCMListener {
+
+        @Override
+        public void onCheckout(Run<?, ?> build, SCM scm, FilePath workspace, TaskListener listener,
+                File changelogFile, SCMRevisionState pollingBaseline) throws Exception {
+            GitBucketPushAction action = build.getAction(GitBucketPushAction.class);
+            if (action == null || action.getChangedFiles().isEmpty()) {
+                return;
+            }
+            try {
+                action.writeChangedFiles(workspace);
+            } catch (IOException e) {
+                e.printStackTrace(listener.error("Failed to write the changed files of the push"));
+            }
+        }
+    }
+}
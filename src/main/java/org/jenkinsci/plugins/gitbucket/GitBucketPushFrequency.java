@@ -0,0 +1,66 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2016, Seiji Sogabe
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.jenkinsci.plugins.gitbucket;
+
+/**
+ * Tracks the interval of pushes to a job to adapt the quiet period.
+ *
+ * The interval is an exponential moving average. While pushes arrive in a
+ * burst, the quiet period is a bit longer than the average interval, so the
+ * pushes are folded into one build. When the average interval exceeds the
+ * cap, pushes are too rare to be batched and the build starts immediately.
+ */
+final class GitBucketPushFrequency {
+
+    private static final double ALPHA = 0.3;
+
+    private static final double FACTOR = 1.5;
+
+    private long lastArrival = -1;
+
+    private double averageInterval = -1;
+
+    synchronized void record(long now) {
+        if (lastArrival >= 0) {
+            long interval = Math.max(0, now - lastArrival);
+            if (averageInterval < 0) {
+                averageInterval = interval;
+            } else {
+                averageInterval = ALPHA * interval + (1 - ALPHA) * averageInterval;
+            }
+        }
+        lastArrival = now;
+    }
+
+    /**
+     * @param maxQuietPeriod the cap in seconds
+     * @return the quiet period in seconds
+     */
+    synchronized int getQuietPeriod(int maxQuietPeriod) {
+        if (averageInterval < 0 || averageInterval > maxQuietPeriod * 1000L) {
+            return 0;
+        }
+        return (int) Math.min(maxQuietPeriod, Math.ceil(averageInterval * FACTOR / 1000));
+    }
+}
@@ -43,10 +43,18 @@ public class GitBucketPushRequest {
 
     private String ref;
 
+    private String before;
+
+    private String after;
+
     private List<Commit> commits;
 
     private Repository repository;
 
+    private String deliveryId;
+
+    private long receivedAt;
+
     public static GitBucketPushRequest create(String payload) {
         if (payload == null) {
             throw new IllegalArgumentException("payload should not be null");
@@ -115,12 +123,34 @@ public class GitBucketPushRequest {
         this.ref = ref;
     }
 
+    /**
+     * @return the head of the ref before the push, or null if GitBucket did not send it.
+     */
+    public String getBefore() {
+        return before;
+    }
+
+    public void setBefore(String before) {
+        this.before = before;
+    }
+
+    /**
+     * @return the head of the ref after the push, or null if GitBucket did not send it.
+     */
+    public String getAfter() {
+        return after;
+    }
+
+    public void setAfter(String after) {
+        this.after = after;
+    }
+
     public List<Commit> getCommits() {
         return commits;
     }
     
     public Commit getLastCommit() {
-        if (commits.isEmpty()) {
+        if (commits == null || commits.isEmpty()) {
             return null;
         }
         return commits.get(commits.size() - 1);
@@ -138,6 +168,28 @@ public class GitBucketPushRequest {
         this.repository = repository;
     }
 
+    /**
+     * @return the id of the WebHook delivery, which is not a part of the payload.
+     */
+    public String getDeliveryId() {
+        return deliveryId;
+    }
+
+    public void setDeliveryId(String deliveryId) {
+        this.deliveryId = deliveryId;
+    }
+
+    /**
+     * @return the time the WebHook was received, or 0 if unknown.
+     */
+    public long getReceivedAt() {
+        return receivedAt;
+    }
+
+    public void setReceivedAt(long receivedAt) {
+        this.receivedAt = receivedAt;
+    }
+
     @Override
     public String toString() {
         return ToStringBuilder.reflectionToString(this, ToStringStyle.MULTI_LINE_STYLE);
@@ -0,0 +1,104 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2016, Seiji Sogabe
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.jenkinsci.plugins.gitbucket;
+
+/**
+ * Times a push went through the trigger, recorded in the cause of the build.
+ *
+ * The delivery id of the cause correlates them with the WebHook and the
+ * polling log.
+ */
+public class GitBucketPushTimings {
+
+    /**
+     * Stages from the WebHook to the start of the build, and the total.
+     */
+    static final String[] STAGES = {
+        "Dispatch", "Polling queue", "Polling", "Quiet period", "Build queue", "Total"
+    };
+
+    private final long receivedAt;
+
+    private final long queuedAt;
+
+    private final long pollStartedAt;
+
+    private final long pollFinishedAt;
+
+    private final int quietPeriod;
+
+    /**
+     * @param receivedAt when the WebHook was received
+     * @param queuedAt when the push was queued for polling, after batching
+     * @param pollStartedAt when the polling started
+     * @param pollFinishedAt when the polling finished and the build was scheduled
+     * @param quietPeriod the quiet period of the build in seconds
+     */
+    public GitBucketPushTimings(long receivedAt, long queuedAt, long pollStartedAt,
+            long pollFinishedAt, int quietPeriod) {
+        this.receivedAt = receivedAt;
+        this.queuedAt = queuedAt;
+        this.pollStartedAt = pollStartedAt;
+        this.pollFinishedAt = pollFinishedAt;
+        this.quietPeriod = quietPeriod;
+    }
+
+    public long getReceivedAt() {
+        return receivedAt;
+    }
+
+    public long getQueuedAt() {
+        return queuedAt;
+    }
+
+    public long getPollStartedAt() {
+        return pollStartedAt;
+    }
+
+    public long getPollFinishedAt() {
+        return pollFinishedAt;
+    }
+
+    public int getQuietPeriod() {
+        return quietPeriod;
+    }
+
+    /**
+     * Returns the milliseconds spent in each of {@link #STAGES}.
+     *
+     * @param startedAt when the build started
+     */
+    long[] getDurations(long startedAt) {
+        long scheduled = Math.max(0, startedAt - pollFinishedAt);
+        long quiet = Math.min(scheduled, quietPeriod * 1000L);
+        return new long[]{
+            Math.max(0, queuedAt - receivedAt),
+            Math.max(0, pollStartedAt - queuedAt),
+            Math.max(0, pollFinishedAt - pollStartedAt),
+            quiet,
+            scheduled - quiet,
+            Math.max(0, startedAt - receivedAt)
+        };
+    }
+}
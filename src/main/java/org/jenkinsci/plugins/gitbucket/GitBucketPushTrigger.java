@@ -23,34 +23,81 @@
  */
 package org.jenkinsci.plugins.gitbucket;
 
+import antlr.ANTLRException;
+import com.cloudbees.plugins.credentials.common.StandardCredentials;
 import hudson.Extension;
 import hudson.Util;
 import hudson.console.AnnotatedLargeText;
+import hudson.init.Terminator;
+import hudson.model.AbstractBuild;
 import hudson.model.AbstractProject;
 import hudson.model.Action;
+import hudson.model.Cause;
+import hudson.model.CauseAction;
+import hudson.model.Computer;
+import hudson.model.Executor;
 import hudson.model.Item;
+import hudson.model.Queue;
+import hudson.model.Result;
+import hudson.model.Run;
+import hudson.model.TaskListener;
+import hudson.plugins.git.BranchSpec;
+import hudson.plugins.git.GitSCM;
 import hudson.plugins.git.RevisionParameterAction;
+import hudson.plugins.git.UserRemoteConfig;
+import hudson.plugins.git.util.BuildData;
+import hudson.scheduler.CronTabList;
+import hudson.scm.SCM;
 import hudson.triggers.SCMTrigger.SCMTriggerCause;
 import hudson.triggers.Trigger;
 import hudson.triggers.TriggerDescriptor;
-import hudson.util.SequentialExecutionQueue;
+import hudson.util.ByteBuffer;
+import hudson.util.FormValidation;
 import hudson.util.StreamTaskListener;
 import java.io.File;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.io.PrintStream;
+import java.io.PrintWriter;
+import java.net.SocketException;
+import java.net.SocketTimeoutException;
+import java.net.URISyntaxException;
+import java.net.UnknownHostException;
 import java.nio.charset.Charset;
 import java.text.DateFormat;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.Comparator;
 import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 import java.util.logging.Level;
 import java.util.logging.Logger;
+import java.util.regex.Pattern;
+import jenkins.model.CauseOfInterruption;
+import jenkins.model.Jenkins;
 import jenkins.model.Jenkins.MasterComputer;
+import jenkins.util.Timer;
+import net.sf.json.JSONObject;
 import org.apache.commons.jelly.XMLOutput;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.transport.URIish;
 import org.jenkinsci.plugins.gitbucket.GitBucketPushRequest.Commit;
 import org.kohsuke.stapler.DataBoundConstructor;
+import org.kohsuke.stapler.DataBoundSetter;
+import org.kohsuke.stapler.QueryParameter;
+import org.kohsuke.stapler.StaplerRequest;
 
 /**
  * Triggers a build when we receive a GitBucket WebHook.
@@ -61,6 +108,31 @@ public class GitBucketPushTrigger extends Trigger<AbstractProject<?, ?>> {
 
     private boolean passThroughGitCommit;
 
+    private boolean adaptiveQuietPeriod;
+
+    private boolean abortSupersededBuilds;
+
+    private String priorityRefs;
+
+    private boolean prefetch;
+
+    private int batchWindow;
+
+    private int batchSize;
+
+    private String pollingSpec;
+
+    private int pollTimeout;
+
+    private int maxQuietPeriod = DEFAULT_MAX_QUIET_PERIOD;
+
+    private transient GitBucketProcessedHeads processedHeads;
+
+    private transient GitBucketPushFrequency pushFrequency;
+
+    // the pushes waiting for the batch window by ref, guarded by this
+    private transient Map<String, List<GitBucketPushRequest>> batches;
+
     @DataBoundConstructor
     public GitBucketPushTrigger(boolean passThroughGitCommit) {
         this.passThroughGitCommit = passThroughGitCommit;
@@ -70,92 +142,886 @@ public class GitBucketPushTrigger extends Trigger<AbstractProject<?, ?>> {
         return passThroughGitCommit;
     }
 
+    public boolean isAdaptiveQuietPeriod() {
+        return adaptiveQuietPeriod;
+    }
+
+    @DataBoundSetter
+    public void setAdaptiveQuietPeriod(boolean adaptiveQuietPeriod) {
+        this.adaptiveQuietPeriod = adaptiveQuietPeriod;
+    }
+
+    public int getMaxQuietPeriod() {
+        // not set in the configurations saved by the older versions
+        return maxQuietPeriod > 0 ? maxQuietPeriod : DEFAULT_MAX_QUIET_PERIOD;
+    }
+
+    @DataBoundSetter
+    public void setMaxQuietPeriod(int maxQuietPeriod) {
+        this.maxQuietPeriod = maxQuietPeriod > 0 ? maxQuietPeriod : DEFAULT_MAX_QUIET_PERIOD;
+    }
+
+    public boolean isAbortSupersededBuilds() {
+        return abortSupersededBuilds;
+    }
+
+    @DataBoundSetter
+    public void setAbortSupersededBuilds(boolean abortSupersededBuilds) {
+        this.abortSupersededBuilds = abortSupersededBuilds;
+    }
+
+    public String getPriorityRefs() {
+        return priorityRefs;
+    }
+
+    @DataBoundSetter
+    public void setPriorityRefs(String priorityRefs) {
+        this.priorityRefs = Util.fixEmptyAndTrim(priorityRefs);
+    }
+
+    public boolean isPrefetch() {
+        return prefetch;
+    }
+
+    @DataBoundSetter
+    public void setPrefetch(boolean prefetch) {
+        this.prefetch = prefetch;
+    }
+
+    public int getBatchWindow() {
+        return batchWindow;
+    }
+
+    /**
+     * @param batchWindow seconds to collect the pushes to a ref for a single
+     * build, or 0 to build each push.
+     */
+    @DataBoundSetter
+    public void setBatchWindow(int batchWindow) {
+        this.batchWindow = Math.max(0, batchWindow);
+    }
+
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    /**
+     * @param batchSize the number of the pushes which closes the batch before
+     * the window elapses, or 0 for no limit.
+     */
+    @DataBoundSetter
+    public void setBatchSize(int batchSize) {
+        this.batchSize = Math.max(0, batchSize);
+    }
+
+    public int getPollTimeout() {
+        return pollTimeout;
+    }
+
+    /**
+     * @param pollTimeout the minutes after which the polling is interrupted,
+     * or 0 to use the global setting.
+     */
+    @DataBoundSetter
+    public void setPollTimeout(int pollTimeout) {
+        this.pollTimeout = Math.max(0, pollTimeout);
+    }
+
+    /**
+     * Returns the minutes after which the polling is interrupted, or 0 for no limit.
+     */
+    int getEffectivePollTimeout() {
+        return pollTimeout > 0 ? pollTimeout : getDescriptor().getPollTimeout();
+    }
+
+    public String getPollingSpec() {
+        return pollingSpec;
+    }
+
+    /**
+     * @param pollingSpec the schedule to poll the job in case a push has been
+     * missed, or null not to poll.
+     */
+    @DataBoundSetter
+    public void setPollingSpec(String pollingSpec) {
+        this.pollingSpec = Util.fixEmptyAndTrim(pollingSpec);
+    }
+
+    @Override
+    public void start(AbstractProject<?, ?> project, boolean newInstance) {
+        super.start(project, newInstance);
+        if (pollingSpec != null) {
+            try {
+                tabs = CronTabList.create(pollingSpec);
+            } catch (ANTLRException e) {
+                LOGGER.log(Level.WARNING, "Invalid polling schedule of " + project.getFullName(), e);
+            }
+        }
+    }
+
+    /**
+     * Polls the job on the polling schedule.
+     *
+     * The heads notified by the recent pushes are used if available, so
+     * GitBucket is contacted only when no push has been received for a while.
+     */
+    @Override
+    public void run() {
+        if (pollingSpec == null || job == null) {
+            return;
+        }
+        Boolean changed = pollRefHeads();
+        if (changed == null) {
+            // shares the turns of the repository with the pushes to it
+            String repository = null;
+            if (job.getScm() instanceof GitSCM) {
+                GitSCM git = (GitSCM) job.getScm();
+                if (!git.getUserRemoteConfigs().isEmpty()) {
+                    repository = GitBucketUtil.toRepositoryName(git.getUserRemoteConfigs().get(0).getUrl());
+                }
+            }
+            getDescriptor().queue.execute(new Runnable() {
+                @Override
+                public void run() {
+                    final StreamTaskListener listener = new StreamTaskListener(new ByteBuffer());
+                    try {
+                        Boolean result = pollWithTimeout(new Callable<Boolean>() {
+                            @Override
+                            public Boolean call() {
+                                return job.poll(listener).hasChanges();
+                            }
+                        });
+                        if (result == null) {
+                            LOGGER.log(Level.WARNING, "Scheduled polling of {0} timed out", job.getName());
+                        } else if (result) {
+                            schedulePollingBuild();
+                        }
+                    } finally {
+                        listener.closeQuietly();
+                    }
+                }
+            }, repository != null ? repository : job.getFullName(), false);
+        } else if (changed) {
+            LOGGER.log(Level.INFO, "{0} has unbuilt heads pushed to GitBucket", job.getName());
+            schedulePollingBuild();
+        }
+    }
+
+    private void schedulePollingBuild() {
+        job.scheduleBuild2(job.getQuietPeriod(), new CauseAction(new SCMTriggerCause("")));
+    }
+
+    /**
+     * Checks if the push to the ref should be polled before the others.
+     */
+    boolean isHighPriority(String ref) {
+        String patterns = priorityRefs != null ? priorityRefs : getDescriptor().getPriorityRefs();
+        return GitBucketPushTriggerDescriptor.matches(patterns, ref);
+    }
+
+    /**
+     * Returns the quiet period for the build triggered by a push.
+     */
+    int getQuietPeriod() {
+        if (!adaptiveQuietPeriod) {
+            return job.getQuietPeriod();
+        }
+        return getPushFrequency().getQuietPeriod(getMaxQuietPeriod());
+    }
+
+    private synchronized GitBucketPushFrequency getPushFrequency() {
+        if (pushFrequency == null) {
+            pushFrequency = new GitBucketPushFrequency();
+        }
+        return pushFrequency;
+    }
+
     public void onPost(final GitBucketPushRequest req) {
+        getPushFrequency().record(System.currentTimeMillis());
+        if (isAlreadyProcessed(req)) {
+            LOGGER.log(Level.INFO, "{0} has already processed {1}. Skip polling.",
+                    new Object[]{job.getName(), req.getLastCommit().getId()});
+            return;
+        }
+        if (req.getDeliveryId() == null) {
+            req.setDeliveryId(UUID.randomUUID().toString());
+        }
+        if (req.getReceivedAt() == 0) {
+            req.setReceivedAt(System.currentTimeMillis());
+        }
+        if (batchWindow > 0) {
+            addToBatch(req);
+        } else {
+            execute(Collections.singletonList(req));
+        }
+    }
+
+    /**
+     * Collects the push into the batch of the ref, which is polled when the
+     * window elapses or the batch is full.
+     */
+    private void addToBatch(GitBucketPushRequest req) {
+        final String ref = req.getRef() != null ? req.getRef() : "";
+        final List<GitBucketPushRequest> batch;
+        boolean first = false;
+        boolean full;
+        synchronized (this) {
+            if (batches == null) {
+                batches = new HashMap<String, List<GitBucketPushRequest>>();
+            }
+            List<GitBucketPushRequest> current = batches.get(ref);
+            if (current == null) {
+                current = new ArrayList<GitBucketPushRequest>();
+                batches.put(ref, current);
+                first = true;
+            }
+            current.add(req);
+            batch = current;
+            full = batchSize > 0 && batch.size() >= batchSize;
+        }
+        if (full) {
+            flushBatch(ref, batch);
+        } else if (first) {
+            Timer.get().schedule(new Runnable() {
+                @Override
+                public void run() {
+                    flushBatch(ref, batch);
+                }
+            }, batchWindow, TimeUnit.SECONDS);
+        }
+    }
+
+    private void flushBatch(String ref, List<GitBucketPushRequest> batch) {
+        List<GitBucketPushRequest> requests;
+        synchronized (this) {
+            // already flushed when it was full
+            if (batches == null || batches.get(ref) != batch) {
+                return;
+            }
+            batches.remove(ref);
+            requests = new ArrayList<GitBucketPushRequest>(batch);
+        }
+        LOGGER.log(Level.INFO, "{0} polls {1} pushes to {2} at once",
+                new Object[]{job.getName(), requests.size(), ref});
+        execute(requests);
+    }
+
+    // overridden by the tests
+    void execute(List<GitBucketPushRequest> requests) {
+        execute(requests, 0, false);
+    }
+
+    /**
+     * Polls the job for the pushes to the same ref, and schedules a build for
+     * all of them if changes are found.
+     *
+     * A failed polling is retried with backoff, and the pushes are kept in
+     * {@link GitBucketDeadLetters} when all the retries have failed. A retried
+     * or deferred push is dropped once a newer push to the ref has arrived.
+     *
+     * @param retries the number of the retries already done
+     * @param rescheduled whether the pushes have been retried or deferred
+     */
+    private void execute(final List<GitBucketPushRequest> requests, final int retries,
+            final boolean rescheduled) {
+        // the newest push
+        final GitBucketPushRequest req = requests.get(requests.size() - 1);
+        final long queuedAt = System.currentTimeMillis();
+        final String host = getHost(req);
         getDescriptor().queue.execute(new Runnable() {
+            private ByteBuffer log;
+
+            private long pollStartedAt;
+
+            private long pollFinishedAt;
+
+            // the reason of the failure, or null if the polling succeeded
+            private String failure;
+
             private boolean polling() {
+                GitBucketPollingLogWriter writer = GitBucketPollingLogWriter.get();
+                File logFile = getLogFile();
+                ByteBuffer buffer = writer.open(logFile);
+                log = buffer;
+                final PollingListener listener = new PollingListener(buffer);
+                boolean succeeded = false;
+                // only the failures to reach the host count against the circuit breaker
+                boolean unreachable = false;
+
                 try {
-                    StreamTaskListener listener = new StreamTaskListener(getLogFile());
+                    PrintStream logger = listener.getLogger();
 
-                    try {
-                        PrintStream logger = listener.getLogger();
-
-                        long start = System.currentTimeMillis();
-                        logger.println("Started on "
-                                + DateFormat.getDateTimeInstance().format(new Date()));
-                        boolean result = job.poll(listener).hasChanges();
-                        logger.println("Done. Took "
-                                + Util.getTimeSpanString(System.currentTimeMillis() - start));
-
-                        if (result) {
-                            logger.println("Changes found");
-                        } else {
-                            logger.println("No changes");
+                    pollStartedAt = System.currentTimeMillis();
+                    logger.println("Started on "
+                            + DateFormat.getDateTimeInstance().format(new Date(pollStartedAt)));
+                    logger.println("Delivery: " + getDeliveryIds());
+                    Boolean result = pollWithTimeout(new Callable<Boolean>() {
+                        @Override
+                        public Boolean call() {
+                            return poll(req, listener);
                         }
+                    });
+                    pollFinishedAt = System.currentTimeMillis();
+                    if (result == null) {
+                        unreachable = true;
+                        failure = "Polling timed out";
+                        listener.error("Polling timed out after "
+                                + Util.getTimeSpanString(pollFinishedAt - pollStartedAt)
+                                + " and was interrupted");
+                        LOGGER.log(Level.WARNING, "Polling of {0} for {1} timed out",
+                                new Object[]{job.getName(), getDeliveryIds()});
+                        return false;
+                    }
+                    logger.println("Done. Took "
+                            + Util.getTimeSpanString(pollFinishedAt - pollStartedAt));
+                    succeeded = !listener.isFailed();
+                    if (!succeeded) {
+                        unreachable = listener.isUnreachable();
+                        failure = "Polling failed";
+                    }
 
-                        return result;
-                    } catch (Error e) {
-                        e.printStackTrace(listener.error("Failed to record SCM polling"));
-                        LOGGER.log(Level.SEVERE, "Failed to record SCM polling", e);
-                        throw e;
-                    } catch (RuntimeException e) {
-                        e.printStackTrace(listener.error("Failed to record SCM polling"));
-                        LOGGER.log(Level.SEVERE, "Failed to record SCM polling", e);
-                        throw e;
-                    } finally {
-                        listener.closeQuietly();
+                    if (result) {
+                        logger.println("Changes found");
+                    } else {
+                        logger.println("No changes");
                     }
-                } catch (IOException e) {
+
+                    return result;
+                } catch (Error e) {
+                    e.printStackTrace(listener.error("Failed to record SCM polling"));
+                    LOGGER.log(Level.SEVERE, "Failed to record SCM polling", e);
+                    throw e;
+                } catch (RuntimeException e) {
+                    e.printStackTrace(listener.error("Failed to record SCM polling"));
                     LOGGER.log(Level.SEVERE, "Failed to record SCM polling", e);
+                    unreachable = isTransportFailure(e);
+                    failure = e.toString();
+                    return false;
+                } finally {
+                    if (host != null && (succeeded || unreachable)) {
+                        recordPolling(host, succeeded);
+                    } else if (host != null) {
+                        // the probe of an open host must end even if the job failed
+                        getDescriptor().breaker.release(host);
+                    }
+                    listener.closeQuietly();
+                    writer.close(logFile, buffer);
                 }
-
-                return false;
             }
 
             @Override
             public void run() {
-                LOGGER.log(Level.INFO, "{0} triggered.", job.getName());
-                if (polling()) {
+                // polling an older head would supersede the builds of the newer one
+                if (rescheduled && isSuperseded(req)) {
+                    LOGGER.log(Level.INFO, "Dropped polling of {0} for {1}: a newer push to {2} has arrived",
+                            new Object[]{job.getName(), getDeliveryIds(), req.getRef()});
+                    return;
+                }
+                GitBucketCircuitBreaker breaker = getDescriptor().breaker;
+                if (host != null && !breaker.allow(host, System.currentTimeMillis())) {
+                    // not a failure of the polling, so the retries are kept
+                    long delay = breaker.getRemainingTime(host, System.currentTimeMillis());
+                    LOGGER.log(Level.INFO, "Deferred polling of {0} for {1} in {2}: {3} is unavailable",
+                            new Object[]{job.getName(), getDeliveryIds(), Util.getTimeSpanString(delay), host});
+                    schedule(retries, delay);
+                    return;
+                }
+                LOGGER.log(Level.INFO, "{0} triggered by {1}.", new Object[]{job.getName(), getDeliveryIds()});
+                boolean changed = polling();
+                if (failure != null) {
+                    retry(failure);
+                    return;
+                }
+                if (changed) {
+                    Commit lastCommit = req.getLastCommit();
+                    if (lastCommit != null) {
+                        getProcessedHeads().put(req.getRef(), lastCommit.getId());
+                    }
                     String name = " #" + job.getNextBuildNumber();
-                    GitBucketPushCause cause = createGitBucketPushCause(req);
-                    Action[] actions = createActions(req);
-                    if (job.scheduleBuild(job.getQuietPeriod(), cause, actions)) {
-                        LOGGER.log(Level.INFO, "SCM changes detected in {0}. Triggering {1}",
-                                new String[]{job.getName(), name});
+                    int quietPeriod = getQuietPeriod();
+                    // the causes are in the order of the pushes, so the newest is the last
+                    List<Cause> causes = new ArrayList<Cause>();
+                    GitBucketPushAction pushAction = GitBucketPushAction.of(requests);
+                    if (passThroughGitCommit) {
+                        for (Queue.Item item : cancelSupersededItems(req.getRef())) {
+                            causes.addAll(item.getCauses());
+                            pushAction = GitBucketPushAction.merge(
+                                    item.getAction(GitBucketPushAction.class), pushAction);
+                        }
+                    }
+                    // the pushes polled together share a single copy of the log
+                    String logId = requests.get(0).getDeliveryId();
+                    archivePollingLog(logId, log);
+                    for (GitBucketPushRequest r : requests) {
+                        GitBucketPushCause cause = createGitBucketPushCause(r, quietPeriod);
+                        cause.setPollingLogId(logId);
+                        causes.add(cause);
+                    }
+                    Action[] actions = createActions(req, causes, pushAction);
+                    if (job.scheduleBuild2(quietPeriod, actions) != null) {
+                        LOGGER.log(Level.INFO, "SCM changes detected in {0}. Triggering {1} for {2}",
+                                new String[]{job.getName(), name, getDeliveryIds()});
+                        if (prefetch) {
+                            GitBucketPrefetcher.prefetch(job);
+                        }
                     } else {
                         LOGGER.log(Level.INFO, "SCM changes detected in {0}. Job is already in the queue.",
                                 job.getName());
                     }
+                    if (abortSupersededBuilds && lastCommit != null) {
+                        abortSupersededBuilds(req.getRef(), lastCommit.getId());
+                    }
                 }
             }
 
-            private GitBucketPushCause createGitBucketPushCause(GitBucketPushRequest req) {
-                GitBucketPushCause cause;
-                String triggeredByUser = req.getPusher().getName();
-                try {
-                    cause = new GitBucketPushCause(triggeredByUser, getLogFile());
-                } catch (IOException ex) {
-                    cause = new GitBucketPushCause(triggeredByUser);
-                }
+            private GitBucketPushCause createGitBucketPushCause(GitBucketPushRequest req, int quietPeriod) {
+                String triggeredByUser = req.getPusher() != null ? req.getPusher().getName() : null;
+                Commit lastCommit = req.getLastCommit();
+                String commitId = lastCommit != null ? lastCommit.getId() : null;
+                GitBucketPushCause cause
+                        = new GitBucketPushCause(triggeredByUser, req.getRef(), commitId, req.getDeliveryId());
+                cause.setTimings(new GitBucketPushTimings(req.getReceivedAt(), queuedAt,
+                        pollStartedAt, pollFinishedAt, quietPeriod));
                 return cause;
             }
 
-            private Action[] createActions(GitBucketPushRequest req) {
+            /**
+             * Queues the pushes again after the backoff, or gives up when the
+             * retries are exhausted.
+             */
+            private void retry(String reason) {
+                if (retries >= getDescriptor().getMaxPollRetries()) {
+                    LOGGER.log(Level.WARNING, "Gave up polling {0} for {1} after {2} retries: {3}",
+                            new Object[]{job.getName(), getDeliveryIds(), retries, reason});
+                    long now = System.currentTimeMillis();
+                    archivePollingLog(requests.get(0).getDeliveryId(), log);
+                    for (GitBucketPushRequest r : requests) {
+                        GitBucketDeadLetters.get().add(job.getFullName(), r, retries + 1, reason, now);
+                    }
+                    return;
+                }
+                long delay = getRetryDelay(retries, RETRY_DELAY, MAX_RETRY_DELAY, RANDOM);
+                LOGGER.log(Level.INFO, "Retrying polling of {0} for {1} in {2}: {3}",
+                        new Object[]{job.getName(), getDeliveryIds(), Util.getTimeSpanString(delay), reason});
+                schedule(retries + 1, delay);
+            }
+
+            private void schedule(final int retriesDone, long delay) {
+                Timer.get().schedule(new Runnable() {
+                    @Override
+                    public void run() {
+                        execute(requests, retriesDone, true);
+                    }
+                }, delay, TimeUnit.MILLISECONDS);
+            }
+
+            private String getDeliveryIds() {
+                List<String> ids = new ArrayList<String>();
+                for (GitBucketPushRequest r : requests) {
+                    ids.add(r.getDeliveryId());
+                }
+                return Util.join(ids, ", ");
+            }
+
+            private Action[] createActions(GitBucketPushRequest req, List<Cause> causes,
+                    GitBucketPushAction pushAction) {
                 List<Action> actions = new ArrayList<Action>();
+                actions.add(new CauseAction(causes));
+                actions.add(pushAction);
 
-                if (passThroughGitCommit) {
-                    Commit lastCommit = req.getLastCommit();
+                Commit lastCommit = req.getLastCommit();
+                if (passThroughGitCommit && lastCommit != null) {
                     actions.add(new RevisionParameterAction(lastCommit.getId(), false));
                 }
 
                 return actions.toArray(new Action[0]);
             }
-        });
+        }, getRepositoryName(req), isHighPriority(req.getRef()));
+    }
+
+    /**
+     * Returns the milliseconds to wait before the retry, doubled for each
+     * retry up to the max, with the upper half randomized so that the jobs
+     * failed together do not retry together.
+     */
+    static long getRetryDelay(int retries, long base, long max, Random random) {
+        long delay = base << Math.min(retries, 30);
+        if (delay <= 0 || delay > max) {
+            delay = max;
+        }
+        return delay / 2 + (long) (random.nextDouble() * (delay / 2));
+    }
+
+    /**
+     * Polls the job for the push, from the local mirror or the remote heads
+     * if possible. Overridden by the tests.
+     */
+    boolean poll(GitBucketPushRequest req, TaskListener listener) {
+        Boolean local = pollLocally(req, listener);
+        return local != null ? local : job.poll(listener).hasChanges();
+    }
+
+    /**
+     * Checks if the polling failed to reach the host, rather than for a reason
+     * of the job such as its credentials, branches or nodes.
+     */
+    static boolean isTransportFailure(Throwable e) {
+        for (Throwable t = e; t != null; t = t.getCause()) {
+            if (t instanceof SocketException || t instanceof SocketTimeoutException
+                    || t instanceof UnknownHostException || isTransportFailure(t.getMessage())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Checks if the error message of git or of the polling tells that the
+     * host could not be reached.
+     */
+    static boolean isTransportFailure(String message) {
+        return message != null && TRANSPORT_FAILURE.matcher(message).find();
+    }
+
+    /**
+     * Records the result of the polling of the host, and warns once when the
+     * host is found unavailable.
+     */
+    private void recordPolling(String host, boolean succeeded) {
+        GitBucketCircuitBreaker breaker = getDescriptor().breaker;
+        boolean open = breaker.isOpen(host);
+        breaker.record(host, succeeded, System.currentTimeMillis());
+        if (!open && breaker.isOpen(host)) {
+            long suspended = breaker.getRemainingTime(host, System.currentTimeMillis());
+            LOGGER.log(Level.WARNING, "Polling of {0} failed repeatedly. Suspended the polling for {1}",
+                    new Object[]{host, Util.getTimeSpanString(suspended)});
+        } else if (open && succeeded) {
+            LOGGER.log(Level.INFO, "Polling of {0} succeeded. Resumed the polling", host);
+        }
+    }
+
+    /**
+     * Checks if the head of the ref notified by the latest push differs from
+     * the head of the push.
+     */
+    static boolean isSuperseded(GitBucketPushRequest req) {
+        GitBucketPushRequest.Repository repository = req.getRepository();
+        String url = repository == null ? null
+                : repository.getCloneUrl() != null ? repository.getCloneUrl() : repository.getUrl();
+        Commit lastCommit = req.getLastCommit();
+        String head = req.getAfter() != null ? req.getAfter() : lastCommit != null ? lastCommit.getId() : null;
+        if (url == null || req.getRef() == null || head == null) {
+            return false;
+        }
+        String latest = GitBucketRefHeadTable.get().getHead(GitBucketUtil.toRepositoryKey(url), req.getRef());
+        return latest != null && !latest.equals(head);
+    }
+
+    /**
+     * Returns the host of the pushed repository, or null if unknown.
+     */
+    static String getHost(GitBucketPushRequest req) {
+        GitBucketPushRequest.Repository repository = req.getRepository();
+        if (repository == null) {
+            return null;
+        }
+        String url = repository.getCloneUrl() != null ? repository.getCloneUrl() : repository.getUrl();
+        if (url == null) {
+            return null;
+        }
+        try {
+            return new URIish(url).getHost();
+        } catch (URISyntaxException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Polls in another thread, which is interrupted when the polling takes
+     * longer than the timeout. Interrupting the polling also kills the git
+     * process started by it, so the queue is not blocked by a hung host.
+     *
+     * @return the result of the polling, or null if it timed out.
+     */
+    private Boolean pollWithTimeout(Callable<Boolean> polling) {
+        Future<Boolean> future = Computer.threadPoolForRemoting.submit(polling);
+        int timeout = getEffectivePollTimeout();
+        try {
+            return timeout > 0 ? future.get(timeout, TimeUnit.MINUTES) : future.get();
+        } catch (TimeoutException e) {
+            future.cancel(true);
+            GitBucketLatencyLink.recordTimedOutPoll();
+            return null;
+        } catch (InterruptedException e) {
+            future.cancel(true);
+            Thread.currentThread().interrupt();
+            return null;
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new RuntimeException(cause);
+        }
+    }
+
+    /**
+     * Polls the pushed ref from the local mirror of the repository, or from
+     * the remote head looked up once for all the jobs.
+     *
+     * @return whether the pushed head has to be built, or null if the job has
+     * to be polled as usual.
+     */
+    private Boolean pollLocally(GitBucketPushRequest req, TaskListener listener) {
+        boolean mirror = getDescriptor().isMirrorPolling();
+        if (!mirror && !getDescriptor().isSharedRemoteHeads()) {
+            return null;
+        }
+        GitSCM git = getLocallyPollableScm();
+        BuildData data = getLastBuildData();
+        String ref = req.getRef();
+        if (git == null || data == null || ref == null || !ref.startsWith("refs/heads/")) {
+            return null;
+        }
+
+        UserRemoteConfig remote = git.getUserRemoteConfigs().get(0);
+        String url = remote.getUrl();
+        StandardCredentials credentials = GitBucketGitClients.lookupCredentials(job, url, remote.getCredentialsId());
+        try {
+            ObjectId head;
+            if (mirror) {
+                GitBucketMirrorCache cache = GitBucketMirrorCache.get();
+                cache.fetch(url, req.getDeliveryId(), credentials, listener);
+                head = cache.getHead(url, credentials, ref, listener);
+            } else {
+                head = GitBucketRemoteHeads.get().getHead(url, ref, req.getDeliveryId(), credentials, listener);
+            }
+            if (head == null) {
+                return null;
+            }
+            listener.getLogger().println((mirror ? "Polled the local mirror: " : "Polled the remote head: ")
+                    + ref + " is at " + head.name());
+            return matches(git, ref) && !data.hasBeenBuilt(head);
+        } catch (IOException e) {
+            e.printStackTrace(listener.error("Failed to poll " + url));
+            return null;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        }
+    }
+
+    /**
+     * Polls the job from the heads notified by the pushes.
+     *
+     * @return whether any of the heads has to be built, or null if the heads
+     * are not known or may be stale and the job has to be polled as usual.
+     */
+    Boolean pollRefHeads() {
+        GitSCM git = getLocallyPollableScm();
+        BuildData data = getLastBuildData();
+        if (git == null || data == null) {
+            return null;
+        }
+        String key = GitBucketUtil.toRepositoryKey(git.getUserRemoteConfigs().get(0).getUrl());
+        Map<String, String> heads = GitBucketRefHeadTable.get().getHeads(key,
+                TimeUnit.MINUTES.toMillis(getDescriptor().getRefHeadMaxAge()), System.currentTimeMillis());
+        if (heads == null) {
+            return null;
+        }
+        boolean matched = false;
+        for (Map.Entry<String, String> e : heads.entrySet()) {
+            if (!e.getKey().startsWith("refs/heads/") || !matches(git, e.getKey())) {
+                continue;
+            }
+            matched = true;
+            try {
+                if (!data.hasBeenBuilt(ObjectId.fromString(e.getValue()))) {
+                    return true;
+                }
+            } catch (IllegalArgumentException ex) {
+                return null;
+            }
+        }
+        // none of the branches of the job has been pushed recently
+        return matched ? Boolean.FALSE : null;
+    }
+
+    /**
+     * Returns the SCM of the job if its branches can be decided without
+     * polling, or null.
+     */
+    private GitSCM getLocallyPollableScm() {
+        SCM scm = job.getScm();
+        if (!(scm instanceof GitSCM)) {
+            return null;
+        }
+        GitSCM git = (GitSCM) scm;
+        if (git.requiresWorkspaceForPolling() || git.getUserRemoteConfigs().size() != 1) {
+            return null;
+        }
+        for (BranchSpec spec : git.getBranches()) {
+            if (spec.getName().contains("$")) {
+                // parameterized branches are resolved only by polling
+                return null;
+            }
+        }
+        return git;
+    }
+
+    private BuildData getLastBuildData() {
+        AbstractBuild<?, ?> lastBuild = job.getLastBuild();
+        return lastBuild != null ? lastBuild.getAction(BuildData.class) : null;
+    }
+
+    /**
+     * Checks if the branch ref is built by the job.
+     */
+    private static boolean matches(GitSCM git, String ref) {
+        return GitBucketPushedRefFetch.isBuilt(git.getUserRemoteConfigs().get(0), git.getBranches(), ref);
+    }
+
+    /**
+     * Returns the name of the pushed repository, e.g. owner/repo.
+     */
+    static String getRepositoryName(GitBucketPushRequest req) {
+        GitBucketPushRequest.Repository repository = req.getRepository();
+        if (repository == null) {
+            return null;
+        }
+        if (repository.getOwner() != null && repository.getOwner().getName() != null) {
+            return repository.getOwner().getName() + '/' + repository.getName();
+        }
+        return repository.getCloneUrl() != null ? repository.getCloneUrl() : repository.getUrl();
+    }
+
+    /**
+     * Cancels the queued builds of this job triggered by the older pushes to the ref.
+     *
+     * Each passed-through commit makes a separate queue item, so only the
+     * newest commit should stay in the queue.
+     *
+     * @return the cancelled items, whose causes and pushes are carried over
+     * to the build of the newest commit
+     */
+    List<Queue.Item> cancelSupersededItems(String ref) {
+        List<Queue.Item> cancelled = new ArrayList<Queue.Item>();
+        Queue queue = Jenkins.getInstance().getQueue();
+        for (Queue.Item item : queue.getItems(job)) {
+            GitBucketPushCause cause = getNewestPushCause(item.getCauses());
+            if (cause == null || !isSameRef(ref, cause.getRef())) {
+                continue;
+            }
+            if (queue.cancel(item)) {
+                LOGGER.log(Level.INFO, "{0} superseded the queued build of {1} for {2}",
+                        new Object[]{job.getName(), cause.getCommitId(), ref});
+                cancelled.add(item);
+            }
+        }
+        return cancelled;
+    }
+
+    /**
+     * Aborts the running builds of this job triggered by the older pushes to the ref.
+     */
+    void abortSupersededBuilds(String ref, String commitId) {
+        for (Computer computer : Jenkins.getInstance().getComputers()) {
+            List<Executor> executors = new ArrayList<Executor>(computer.getExecutors());
+            executors.addAll(computer.getOneOffExecutors());
+            for (Executor executor : executors) {
+                Queue.Executable executable = executor.getCurrentExecutable();
+                if (!(executable instanceof AbstractBuild)) {
+                    continue;
+                }
+                AbstractBuild<?, ?> build = (AbstractBuild<?, ?>) executable;
+                if (build.getProject() != job) {
+                    continue;
+                }
+                GitBucketPushCause cause = getNewestPushCause(build.getCauses());
+                if (cause == null || !isSameRef(ref, cause.getRef()) || commitId.equals(cause.getCommitId())) {
+                    continue;
+                }
+                LOGGER.log(Level.INFO, "Aborting {0} superseded by the push of {1} to {2}",
+                        new Object[]{build.getFullDisplayName(), commitId, ref});
+                executor.interrupt(Result.ABORTED, new SupersededByPush(ref, commitId));
+            }
+        }
+    }
+
+    /**
+     * Returns the cause of the newest push, which is the commit built.
+     *
+     * The causes of a batch, and of the pushes folded into a queued build,
+     * are in the order of the pushes.
+     *
+     * @return the last push cause, or null if not triggered by a push.
+     */
+    static GitBucketPushCause getNewestPushCause(List<Cause> causes) {
+        GitBucketPushCause newest = null;
+        for (Cause cause : causes) {
+            if (cause instanceof GitBucketPushCause) {
+                newest = (GitBucketPushCause) cause;
+            }
+        }
+        return newest;
+    }
+
+    private static boolean isSameRef(String ref1, String ref2) {
+        return ref1 == null ? ref2 == null : ref1.equals(ref2);
+    }
+
+    /**
+     * Checks if the last pushed commit has been built or has already triggered
+     * a build, without touching the repository.
+     */
+    private boolean isAlreadyProcessed(GitBucketPushRequest req) {
+        Commit lastCommit = req.getLastCommit();
+        if (lastCommit == null || lastCommit.getId() == null) {
+            return false;
+        }
+        String head = lastCommit.getId();
+        if (getProcessedHeads().isProcessed(req.getRef(), head)) {
+            return true;
+        }
+        AbstractBuild<?, ?> lastBuild = job.getLastBuild();
+        if (lastBuild == null) {
+            return false;
+        }
+        BuildData data = lastBuild.getAction(BuildData.class);
+        if (data == null) {
+            return false;
+        }
+        try {
+            return data.hasBeenBuilt(ObjectId.fromString(head));
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+    }
+
+    private synchronized GitBucketProcessedHeads getProcessedHeads() {
+        if (processedHeads == null) {
+            processedHeads = GitBucketProcessedHeads.load(job.getRootDir());
+        }
+        return processedHeads;
     }
 
     public static class GitBucketPushCause extends SCMTriggerCause {
 
         private final String pushedBy;
 
+        private String ref;
+
+        private String commitId;
+
+        private String deliveryId;
+
+        private GitBucketPushTimings timings;
+
+        private String pollingLogId;
+
         public GitBucketPushCause(String pushedBy) {
             this(pushedBy, "");
         }
@@ -170,6 +1036,82 @@ public class GitBucketPushTrigger extends Trigger<AbstractProject<?, ?>> {
             this.pushedBy = pushedBy;
         }
 
+        /**
+         * Creates the cause referring to the polling log archived for the delivery
+         * instead of copying the log.
+         */
+        public GitBucketPushCause(String pushedBy, String ref, String commitId, String deliveryId) {
+            this(pushedBy, "");
+            this.ref = ref;
+            this.commitId = commitId;
+            this.deliveryId = deliveryId;
+        }
+
+        public String getPushedBy() {
+            return pushedBy;
+        }
+
+        /**
+         * @return the pushed ref, or null if GitBucket did not send it.
+         */
+        public String getRef() {
+            return ref;
+        }
+
+        /**
+         * @return the id of the last pushed commit, or null if no commit was pushed.
+         */
+        public String getCommitId() {
+            return commitId;
+        }
+
+        /**
+         * @return the id of the WebHook delivery, or null if the cause has the polling log.
+         */
+        public String getDeliveryId() {
+            return deliveryId;
+        }
+
+        /**
+         * @return when the push went through each stage before the build was
+         * scheduled, or null if the build was triggered by an older version.
+         */
+        public GitBucketPushTimings getTimings() {
+            return timings;
+        }
+
+        void setTimings(GitBucketPushTimings timings) {
+            this.timings = timings;
+        }
+
+        /**
+         * @return the id of the polling log archived for the delivery, which is
+         * shared by the deliveries polled together, or null if the cause has the
+         * polling log.
+         */
+        public String getPollingLogId() {
+            return pollingLogId != null ? pollingLogId : deliveryId;
+        }
+
+        void setPollingLogId(String pollingLogId) {
+            this.pollingLogId = pollingLogId;
+        }
+
+        @Override
+        public void onAddedTo(Run build) {
+            // the polling log is archived in the job directory
+            if (deliveryId == null) {
+                super.onAddedTo(build);
+            }
+        }
+
+        @Override
+        public void onLoad(Run<?, ?> build) {
+            if (deliveryId == null) {
+                super.onLoad(build);
+            }
+        }
+
         @Override
         public String getShortDescription() {
             if (pushedBy == null) {
@@ -180,6 +1122,36 @@ public class GitBucketPushTrigger extends Trigger<AbstractProject<?, ?>> {
         }
     }
 
+    /**
+     * Records that the build was aborted by a newer push.
+     */
+    public static class SupersededByPush extends CauseOfInterruption {
+
+        private static final long serialVersionUID = 1L;
+
+        private final String ref;
+
+        private final String commitId;
+
+        public SupersededByPush(String ref, String commitId) {
+            this.ref = ref;
+            this.commitId = commitId;
+        }
+
+        public String getRef() {
+            return ref;
+        }
+
+        public String getCommitId() {
+            return commitId;
+        }
+
+        @Override
+        public String getShortDescription() {
+            return String.format("Superseded by GitBucket push of %s to %s", commitId, ref);
+        }
+    }
+
     @Override
     public Collection<? extends Action> getProjectActions() {
         return Collections.singletonList(new GitBucketWebHookPollingAction());
@@ -207,12 +1179,36 @@ public class GitBucketPushTrigger extends Trigger<AbstractProject<?, ?>> {
         }
 
         public String getLog() throws IOException {
-            return Util.loadFile(getLogFile());
+            return readLog();
         }
 
         public void writeLogTo(XMLOutput out) throws IOException {
-            new AnnotatedLargeText<GitBucketWebHookPollingAction>(
-                    getLogFile(), Charset.defaultCharset(), true, this).writeHtmlTo(0, out.asWriter());
+            getLogText().writeHtmlTo(0, out.asWriter());
+        }
+
+        /**
+         * Checks if there is a log to show without reading it.
+         */
+        public boolean isLogAvailable() {
+            File logFile = getLogFile();
+            return GitBucketPollingLogWriter.get().getBuffer(logFile) != null || logFile.length() > 0;
+        }
+
+        /**
+         * Returns the log, which is still growing while a poll is running.
+         *
+         * Used by the progressive rendering of the page through "logText/progressiveHtml".
+         */
+        public AnnotatedLargeText<GitBucketWebHookPollingAction> getLogText() {
+            GitBucketPollingLogWriter writer = GitBucketPollingLogWriter.get();
+            File logFile = getLogFile();
+            ByteBuffer buffer = writer.getBuffer(logFile);
+            if (buffer != null) {
+                return new AnnotatedLargeText<GitBucketWebHookPollingAction>(
+                        buffer, Charset.defaultCharset(), !writer.isRunning(logFile), this);
+            }
+            return new AnnotatedLargeText<GitBucketWebHookPollingAction>(
+                    logFile, Charset.defaultCharset(), true, this);
         }
     }
 
@@ -225,11 +1221,336 @@ public class GitBucketPushTrigger extends Trigger<AbstractProject<?, ?>> {
         return new File(job.getRootDir(), "gitbucket-polling.log");
     }
 
+    /**
+     * Archives the polling log which caused a build or gave up. The log of a
+     * later polling of the same delivery, such as a retry, replaces it.
+     *
+     * The log stays in the job directory until the build it caused starts and
+     * moves it into the build directory, so it is deleted with the build.
+     */
+    private void archivePollingLog(String logId, ByteBuffer log) {
+        if (log == null) {
+            return;
+        }
+        File file = getPollingLogFile(job.getRootDir(), logId);
+        GitBucketPollingLogWriter writer = GitBucketPollingLogWriter.get();
+        File dir = file.getParentFile();
+        if (!dir.isDirectory() && !dir.mkdirs()) {
+            LOGGER.log(Level.WARNING, "Failed to create {0}", dir);
+            return;
+        }
+        writer.close(file, log);
+        pruneArchivedLogs(dir, MAX_ARCHIVED_LOGS, getQueuedPollingLogIds());
+    }
+
+    /**
+     * Returns the ids of the polling logs of the builds waiting in the queue,
+     * which are moved into the build directories when the builds start.
+     */
+    private Set<String> getQueuedPollingLogIds() {
+        Set<String> ids = new HashSet<String>();
+        Jenkins jenkins = Jenkins.getInstance();
+        if (jenkins == null) {
+            return ids;
+        }
+        for (Queue.Item item : jenkins.getQueue().getItems(job)) {
+            for (Cause cause : item.getCauses()) {
+                if (cause instanceof GitBucketPushCause) {
+                    ids.add(((GitBucketPushCause) cause).getPollingLogId());
+                }
+            }
+        }
+        return ids;
+    }
+
+    /**
+     * Returns the file of the polling log archived in the job or the build
+     * directory.
+     */
+    static File getPollingLogFile(File dir, String logId) {
+        return new File(new File(dir, ARCHIVE_DIR_NAME), logId + ".log");
+    }
+
+    /**
+     * Deletes the oldest archived logs exceeding the limit, except the logs
+     * still waited for by the builds in the queue. The logs which caused the
+     * builds have been moved into the build directories, so the logs left are
+     * the logs of the pushes which gave up or did not start a build.
+     */
+    static void pruneArchivedLogs(File dir, int max, Set<String> keep) {
+        List<File> files = new ArrayList<File>();
+        File[] children = dir.listFiles();
+        if (children == null) {
+            return;
+        }
+        for (File file : children) {
+            String name = file.getName();
+            if (!name.endsWith(".log") || !keep.contains(name.substring(0, name.length() - ".log".length()))) {
+                files.add(file);
+            }
+        }
+        if (files.size() <= max) {
+            return;
+        }
+        Collections.sort(files, new Comparator<File>() {
+            @Override
+            public int compare(File f1, File f2) {
+                long l1 = f1.lastModified();
+                long l2 = f2.lastModified();
+                return l1 < l2 ? -1 : (l1 == l2 ? 0 : 1);
+            }
+        });
+        for (File file : files.subList(0, files.size() - max)) {
+            if (!file.delete()) {
+                LOGGER.log(Level.FINE, "Failed to delete {0}", file);
+            }
+        }
+    }
+
+    /**
+     * Reads the last polling log, which may not have been written to the file yet.
+     */
+    private String readLog() throws IOException {
+        File logFile = getLogFile();
+        ByteBuffer buffer = GitBucketPollingLogWriter.get().getBuffer(logFile);
+        if (buffer != null) {
+            return buffer.toString();
+        }
+        return logFile.exists() ? Util.loadFile(logFile) : "";
+    }
+
+    /**
+     * Writes the polling logs kept in memory before Jenkins stops.
+     */
+    @Terminator
+    public static void flushPollingLogs() {
+        GitBucketPollingLogWriter.get().flush();
+    }
+
+    /**
+     * Notices the fatal errors reported by the polling, which does not throw
+     * them.
+     */
+    private static final class PollingListener extends StreamTaskListener {
+
+        private static final long serialVersionUID = 1L;
+
+        private volatile boolean failed;
+
+        private volatile boolean unreachable;
+
+        PollingListener(OutputStream out) {
+            super(out);
+        }
+
+        boolean isFailed() {
+            return failed;
+        }
+
+        /**
+         * @return whether any of the fatal errors tells that the host could
+         * not be reached.
+         */
+        boolean isUnreachable() {
+            return unreachable;
+        }
+
+        @Override
+        public PrintWriter fatalError(String msg) {
+            failed = true;
+            unreachable |= isTransportFailure(msg);
+            return super.fatalError(msg);
+        }
+
+        @Override
+        public PrintWriter fatalError(String format, Object... args) {
+            failed = true;
+            unreachable |= isTransportFailure(String.format(format, args));
+            return super.fatalError(format, args);
+        }
+    }
+
     @Extension
     public static class GitBucketPushTriggerDescriptor extends TriggerDescriptor {
 
-        private transient final SequentialExecutionQueue queue
-                = new SequentialExecutionQueue(MasterComputer.threadPoolForRemoting);
+        private int maxConcurrentPolls = DEFAULT_MAX_CONCURRENT_POLLS;
+
+        private String priorityRefs;
+
+        private String repositoryWeights;
+
+        private boolean mirrorPolling;
+
+        private boolean sharedRemoteHeads;
+
+        private int refHeadMaxAge = DEFAULT_REF_HEAD_MAX_AGE;
+
+        private int pollTimeout = DEFAULT_POLL_TIMEOUT;
+
+        private int maxPollRetries = DEFAULT_MAX_POLL_RETRIES;
+
+        transient final GitBucketCircuitBreaker breaker = new GitBucketCircuitBreaker(
+                Integer.getInteger(GitBucketPushTrigger.class.getName() + ".failuresToSuspend", 5),
+                Long.getLong(GitBucketPushTrigger.class.getName() + ".suspendDuration", 60 * 1000));
+
+        private transient final GitBucketTriggerQueue queue
+                = new GitBucketTriggerQueue(MasterComputer.threadPoolForRemoting, DEFAULT_MAX_CONCURRENT_POLLS);
+
+        public GitBucketPushTriggerDescriptor() {
+            load();
+            queue.setMaxConcurrency(getMaxConcurrentPolls());
+            try {
+                queue.setWeights(parseWeights(repositoryWeights));
+            } catch (IllegalArgumentException e) {
+                LOGGER.log(Level.WARNING, "Ignore the repository weights", e);
+            }
+        }
+
+        public int getMaxConcurrentPolls() {
+            return maxConcurrentPolls > 0 ? maxConcurrentPolls : DEFAULT_MAX_CONCURRENT_POLLS;
+        }
+
+        public void setMaxConcurrentPolls(int maxConcurrentPolls) {
+            this.maxConcurrentPolls = maxConcurrentPolls;
+        }
+
+        public String getPriorityRefs() {
+            return priorityRefs;
+        }
+
+        public void setPriorityRefs(String priorityRefs) {
+            this.priorityRefs = Util.fixEmptyAndTrim(priorityRefs);
+        }
+
+        public String getRepositoryWeights() {
+            return repositoryWeights;
+        }
+
+        public void setRepositoryWeights(String repositoryWeights) {
+            this.repositoryWeights = Util.fixEmptyAndTrim(repositoryWeights);
+        }
+
+        public boolean isMirrorPolling() {
+            return mirrorPolling;
+        }
+
+        public void setMirrorPolling(boolean mirrorPolling) {
+            this.mirrorPolling = mirrorPolling;
+        }
+
+        public boolean isSharedRemoteHeads() {
+            return sharedRemoteHeads;
+        }
+
+        public void setSharedRemoteHeads(boolean sharedRemoteHeads) {
+            this.sharedRemoteHeads = sharedRemoteHeads;
+        }
+
+        /**
+         * @return minutes after the last push to a repository during which the
+         * scheduled polling uses the pushed heads.
+         */
+        public int getRefHeadMaxAge() {
+            return refHeadMaxAge > 0 ? refHeadMaxAge : DEFAULT_REF_HEAD_MAX_AGE;
+        }
+
+        public void setRefHeadMaxAge(int refHeadMaxAge) {
+            this.refHeadMaxAge = refHeadMaxAge;
+        }
+
+        /**
+         * @return minutes after which the polling of the jobs without their own
+         * timeout is interrupted, or 0 for no limit.
+         */
+        public int getPollTimeout() {
+            return pollTimeout;
+        }
+
+        /**
+         * @param pollTimeout the minutes after which the polling is interrupted,
+         * or 0 for no limit.
+         */
+        public void setPollTimeout(int pollTimeout) {
+            this.pollTimeout = Math.max(0, pollTimeout);
+        }
+
+        public int getMaxPollRetries() {
+            return maxPollRetries;
+        }
+
+        /**
+         * @param maxPollRetries the number of the retries of a failed polling,
+         * or 0 not to retry.
+         */
+        public void setMaxPollRetries(int maxPollRetries) {
+            this.maxPollRetries = Math.max(0, maxPollRetries);
+        }
+
+        public FormValidation doCheckPollingSpec(@QueryParameter String value) {
+            if (Util.fixEmptyAndTrim(value) == null) {
+                return FormValidation.ok();
+            }
+            try {
+                CronTabList.create(value);
+                return FormValidation.ok();
+            } catch (ANTLRException e) {
+                return FormValidation.error(e.getMessage());
+            }
+        }
+
+        public FormValidation doCheckRepositoryWeights(@QueryParameter String value) {
+            try {
+                parseWeights(value);
+                return FormValidation.ok();
+            } catch (IllegalArgumentException e) {
+                return FormValidation.error(e.getMessage());
+            }
+        }
+
+        /**
+         * Parses the lines of "owner/repo=weight".
+         */
+        static Map<String, Integer> parseWeights(String text) {
+            Map<String, Integer> weights = new HashMap<String, Integer>();
+            if (text == null) {
+                return weights;
+            }
+            for (String line : text.split("\\r?\\n")) {
+                line = line.trim();
+                if (line.length() == 0) {
+                    continue;
+                }
+                int index = line.lastIndexOf('=');
+                if (index <= 0) {
+                    throw new IllegalArgumentException("Expected owner/repo=weight: " + line);
+                }
+                try {
+                    int weight = Integer.parseInt(line.substring(index + 1).trim());
+                    if (weight <= 0) {
+                        throw new IllegalArgumentException("Weight must be positive: " + line);
+                    }
+                    weights.put(line.substring(0, index).trim(), weight);
+                } catch (NumberFormatException e) {
+                    throw new IllegalArgumentException("Invalid weight: " + line);
+                }
+            }
+            return weights;
+        }
+
+        @Override
+        public boolean configure(StaplerRequest req, JSONObject json) throws FormException {
+            req.bindJSON(this, json);
+            Map<String, Integer> weights;
+            try {
+                weights = parseWeights(repositoryWeights);
+            } catch (IllegalArgumentException e) {
+                throw new FormException(e.getMessage(), "repositoryWeights");
+            }
+            save();
+            queue.setMaxConcurrency(getMaxConcurrentPolls());
+            queue.setWeights(weights);
+            return true;
+        }
 
         @Override
         public boolean isApplicable(Item item) {
@@ -246,7 +1567,62 @@ public class GitBucketPushTrigger extends Trigger<AbstractProject<?, ?>> {
             return "/plugin/gitbucket/help/help-trigger.html";
         }
 
+        /**
+         * Checks if the ref matches one of the patterns.
+         *
+         * The patterns are separated by whitespace or comma, and '*' matches
+         * any characters. Both "refs/heads/master" and "master" are matched
+         * against the patterns.
+         */
+        static boolean matches(String patterns, String ref) {
+            if (patterns == null || ref == null) {
+                return false;
+            }
+            String branch = ref.startsWith("refs/heads/") ? ref.substring("refs/heads/".length()) : ref;
+            for (String p : patterns.split("[\\s,]+")) {
+                if (p.length() == 0) {
+                    continue;
+                }
+                StringBuilder regex = new StringBuilder();
+                for (String part : p.split("\\*", -1)) {
+                    if (regex.length() > 0) {
+                        regex.append(".*");
+                    }
+                    regex.append(Pattern.quote(part));
+                }
+                Pattern pattern = Pattern.compile(regex.toString());
+                if (pattern.matcher(ref).matches() || pattern.matcher(branch).matches()) {
+                    return true;
+                }
+            }
+            return false;
+        }
     }
 
+    private static final int DEFAULT_MAX_CONCURRENT_POLLS = 10;
+
+    private static final int DEFAULT_MAX_QUIET_PERIOD = 120;
+
+    private static final int DEFAULT_REF_HEAD_MAX_AGE = 60;
+
+    private static final int DEFAULT_POLL_TIMEOUT = 10;
+
+    private static final int DEFAULT_MAX_POLL_RETRIES = 5;
+
+    private static final long RETRY_DELAY = Long.getLong(GitBucketPushTrigger.class.getName() + ".retryDelay",
+            15 * 1000);
+
+    private static final long MAX_RETRY_DELAY = TimeUnit.MINUTES.toMillis(15);
+
+    private static final Random RANDOM = new Random();
+
+    private static final Pattern TRANSPORT_FAILURE = Pattern.compile("connection refused|connection timed out"
+            + "|connection reset|could not resolve host|unknown ?host|no route to host|network is unreachable"
+            + "|failed to connect|remote end hung up|read timed out", Pattern.CASE_INSENSITIVE);
+
+    private static final String ARCHIVE_DIR_NAME = "gitbucket-polling";
+
+    private static final int MAX_ARCHIVED_LOGS = 100;
+
     private static final Logger LOGGER = Logger.getLogger(GitBucketPushTrigger.class.getName());
 }
@@ -0,0 +1,146 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2016, Seiji Sogabe
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.jenkinsci.plugins.gitbucket;
+
+import hudson.Extension;
+import hudson.model.Executor;
+import hudson.model.Queue;
+import hudson.model.Run;
+import hudson.model.TaskListener;
+import hudson.plugins.git.BranchSpec;
+import hudson.plugins.git.GitException;
+import hudson.plugins.git.GitSCM;
+import hudson.plugins.git.UserRemoteConfig;
+import hudson.plugins.git.extensions.GitSCMExtension;
+import hudson.plugins.git.extensions.GitSCMExtensionDescriptor;
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.util.Collections;
+import java.util.List;
+import org.eclipse.jgit.transport.RefSpec;
+import org.eclipse.jgit.transport.URIish;
+import org.jenkinsci.plugins.gitclient.FetchCommand;
+import org.jenkinsci.plugins.gitclient.GitClient;
+import org.kohsuke.stapler.DataBoundConstructor;
+
+/**
+ * Fetches only the pushed branch when the build was triggered by a push.
+ *
+ * The fetch then depends on the pushed change rather than on the number of
+ * the refs in the repository. Builds not triggered by a push, or by a push to
+ * a branch the job does not build, fetch as usual.
+ */
+public class GitBucketPushedRefFetch extends GitSCMExtension {
+
+    private final boolean shallow;
+
+    @DataBoundConstructor
+    public GitBucketPushedRefFetch(boolean shallow) {
+        this.shallow = shallow;
+    }
+
+    public boolean isShallow() {
+        return shallow;
+    }
+
+    @Override
+    public void decorateFetchCommand(GitSCM scm, GitClient git, TaskListener listener, FetchCommand cmd)
+            throws IOException, InterruptedException, GitException {
+        GitBucketPushAction action = getPushAction();
+        // the fetch command does not tell which remote it fetches from
+        if (action == null || scm.getUserRemoteConfigs().size() != 1) {
+            return;
+        }
+        UserRemoteConfig remote = scm.getUserRemoteConfigs().get(0);
+        RefSpec refSpec = toRefSpec(remote, action.getRef());
+        if (refSpec == null) {
+            return;
+        }
+        // the branches the job builds would not be fetched at all
+        if (!isBuilt(remote, scm.getBranches(), action.getRef())) {
+            listener.getLogger().println("Fetching all the refs: " + action.getRef() + " is not built");
+            return;
+        }
+        listener.getLogger().println("Fetching only the pushed ref " + action.getRef());
+        try {
+            cmd.from(new URIish(remote.getUrl()), Collections.singletonList(refSpec));
+        } catch (URISyntaxException e) {
+            throw new IOException("Invalid repository url: " + remote.getUrl(), e);
+        }
+        if (shallow) {
+            cmd.shallow(true);
+        }
+    }
+
+    /**
+     * Returns the refspec fetching only the pushed branch into its remote
+     * tracking branch, or null if the ref is not a branch.
+     */
+    static RefSpec toRefSpec(UserRemoteConfig remote, String ref) {
+        if (ref == null || !ref.startsWith("refs/heads/")) {
+            return null;
+        }
+        String name = remote.getName() != null && remote.getName().length() > 0 ? remote.getName() : "origin";
+        String branch = ref.substring("refs/heads/".length());
+        return new RefSpec("+" + ref + ":refs/remotes/" + name + "/" + branch);
+    }
+
+    /**
+     * Checks if the branch is one of the branches the job builds.
+     */
+    static boolean isBuilt(UserRemoteConfig remote, List<BranchSpec> branches, String ref) {
+        if (ref == null || !ref.startsWith("refs/heads/")) {
+            return false;
+        }
+        String name = remote.getName() != null && remote.getName().length() > 0 ? remote.getName() : "origin";
+        String branch = name + '/' + ref.substring("refs/heads/".length());
+        for (BranchSpec spec : branches) {
+            if (spec.matches(branch)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static GitBucketPushAction getPushAction() {
+        Executor executor = Executor.currentExecutor();
+        if (executor == null) {
+            return null;
+        }
+        Queue.Executable executable = executor.getCurrentExecutable();
+        if (!(executable instanceof Run)) {
+            return null;
+        }
+        return ((Run<?, ?>) executable).getAction(GitBucketPushAction.class);
+    }
+
+    @Extension
+    public static class DescriptorImpl extends GitSCMExtensionDescriptor {
+
+        @Override
+        public String getDisplayName() {
+            return "Fetch only the ref pushed to GitBucket";
+        }
+    }
+}
@@ -0,0 +1,186 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2016, Seiji Sogabe
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.jenkinsci.plugins.gitbucket;
+
+import hudson.XmlFile;
+import java.io.File;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import jenkins.model.Jenkins;
+import jenkins.util.Timer;
+
+/**
+ * Latest heads of the refs of the GitBucket repositories, as notified by the
+ * pushes.
+ *
+ * Saved in gitbucket-ref-heads.xml of JENKINS_HOME shortly after the changes,
+ * so that a burst of pushes is saved at once.
+ */
+final class GitBucketRefHeadTable {
+
+    static final String FILE_NAME = "gitbucket-ref-heads.xml";
+
+    private static final String ZERO_ID = "0000000000000000000000000000000000000000";
+
+    private static final long SAVE_DELAY = 5 * 1000;
+
+    private static GitBucketRefHeadTable instance;
+
+    // keyed by the repository url in lower case
+    private final Map<String, Repository> repositories = new HashMap<String, Repository>();
+
+    private transient XmlFile file;
+
+    private transient boolean saveScheduled;
+
+    private GitBucketRefHeadTable() {
+    }
+
+    static synchronized GitBucketRefHeadTable get() {
+        if (instance == null) {
+            instance = load(Jenkins.getInstance().getRootDir());
+        }
+        return instance;
+    }
+
+    static GitBucketRefHeadTable load(File dir) {
+        XmlFile file = new XmlFile(Jenkins.XSTREAM2, new File(dir, FILE_NAME));
+        GitBucketRefHeadTable table = null;
+        if (file.exists()) {
+            try {
+                table = (GitBucketRefHeadTable) file.read();
+            } catch (IOException e) {
+                LOGGER.log(Level.WARNING, "Failed to load " + file, e);
+            }
+        }
+        if (table == null) {
+            table = new GitBucketRefHeadTable();
+        }
+        table.file = file;
+        return table;
+    }
+
+    /**
+     * Records the pushed head of the ref. A zero id removes the ref.
+     */
+    void update(String repositoryKey, String ref, String head, long now) {
+        if (repositoryKey == null || ref == null || head == null) {
+            return;
+        }
+        synchronized (this) {
+            Repository repository = repositories.get(repositoryKey);
+            if (repository == null) {
+                repository = new Repository();
+                repositories.put(repositoryKey, repository);
+            }
+            if (ZERO_ID.equals(head)) {
+                repository.heads.remove(ref);
+                repository.getUpdatedAt().remove(ref);
+            } else {
+                repository.heads.put(ref, head);
+                repository.getUpdatedAt().put(ref, now);
+            }
+            if (saveScheduled) {
+                return;
+            }
+            saveScheduled = true;
+        }
+        Timer.get().schedule(new Runnable() {
+            @Override
+            public void run() {
+                save();
+            }
+        }, SAVE_DELAY, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Returns the heads of the refs of the repository pushed within the max
+     * age, or null if there is none.
+     *
+     * The refs not pushed within the max age are forgotten, since a missed
+     * push may have left their heads outdated.
+     */
+    synchronized Map<String, String> getHeads(String repositoryKey, long maxAge, long now) {
+        Repository repository = repositories.get(repositoryKey);
+        if (repository == null) {
+            return null;
+        }
+        Map<String, Long> updatedAt = repository.getUpdatedAt();
+        for (Iterator<String> it = repository.heads.keySet().iterator(); it.hasNext();) {
+            String ref = it.next();
+            Long updated = updatedAt.get(ref);
+            if (updated == null || now - updated > maxAge) {
+                it.remove();
+                updatedAt.remove(ref);
+            }
+        }
+        if (repository.heads.isEmpty()) {
+            repositories.remove(repositoryKey);
+            return null;
+        }
+        return new LinkedHashMap<String, String>(repository.heads);
+    }
+
+    /**
+     * Returns the head of the ref notified by the latest push regardless of
+     * its age, or null if unknown.
+     */
+    synchronized String getHead(String repositoryKey, String ref) {
+        Repository repository = repositories.get(repositoryKey);
+        return repository != null ? repository.heads.get(ref) : null;
+    }
+
+    synchronized void save() {
+        saveScheduled = false;
+        try {
+            file.write(this);
+        } catch (IOException e) {
+            LOGGER.log(Level.WARNING, "Failed to save " + file, e);
+        }
+    }
+
+    private static final class Repository {
+
+        private final Map<String, String> heads = new LinkedHashMap<String, String>();
+
+        // keyed by the ref
+        private Map<String, Long> updatedAt = new HashMap<String, Long>();
+
+        private Map<String, Long> getUpdatedAt() {
+            // not in the table saved by the older versions
+            if (updatedAt == null) {
+                updatedAt = new HashMap<String, Long>();
+            }
+            return updatedAt;
+        }
+    }
+
+    private static final Logger LOGGER = Logger.getLogger(GitBucketRefHeadTable.class.getName());
+}
@@ -0,0 +1,239 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2016, Seiji Sogabe
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.jenkinsci.plugins.gitbucket;
+
+import com.cloudbees.plugins.credentials.common.StandardCredentials;
+import hudson.FilePath;
+import hudson.Util;
+import hudson.model.Computer;
+import hudson.model.Node;
+import hudson.model.TaskListener;
+import hudson.plugins.git.GitException;
+import hudson.util.LogTaskListener;
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import jenkins.model.Jenkins;
+import org.eclipse.jgit.transport.RefSpec;
+import org.eclipse.jgit.transport.URIish;
+import org.jenkinsci.plugins.gitclient.GitClient;
+
+/**
+ * Reference repositories of the GitBucket repositories on the nodes.
+ *
+ * A reference repository is created on the node by the first checkout, and
+ * is refreshed in the background when a push to the repository arrives. The
+ * jobs fetching the repository with different credentials have their own
+ * reference repositories, like {@link GitBucketMirrorCache}.
+ *
+ * The workspaces borrow the objects of the reference repository, so git must
+ * never delete them: automatic gc is disabled and unreachable objects are
+ * never pruned. Do not run "git gc" in a reference repository by hand.
+ */
+final class GitBucketReferenceRepositories {
+
+    static final String DIR_NAME = "gitbucket-references";
+
+    private static final GitBucketReferenceRepositories INSTANCE = new GitBucketReferenceRepositories();
+
+    // the references known to exist, keyed by GitBucketMirrorCache#getKey
+    private final Map<String, Reference> references = new HashMap<String, Reference>();
+
+    private final Map<String, Object> locks = new HashMap<String, Object>();
+
+    static GitBucketReferenceRepositories get() {
+        return INSTANCE;
+    }
+
+    static FilePath getReferenceDir(FilePath root, String url, String credentialsId) {
+        return root.child(DIR_NAME).child(Util.getDigestOf(GitBucketMirrorCache.getKey(url, credentialsId)) + ".git");
+    }
+
+    /**
+     * Returns the reference repository on the node, creating it if needed.
+     *
+     * @return the reference repository, or null if the node has no root path.
+     */
+    FilePath prepare(Node node, String url, StandardCredentials credentials, TaskListener listener)
+            throws IOException, InterruptedException {
+        return prepare(node, url, credentials, listener, false);
+    }
+
+    /**
+     * Fetches the reference repository on the node, creating it if needed.
+     *
+     * @return the reference repository, or null if the node has no root path.
+     */
+    FilePath update(Node node, String url, StandardCredentials credentials, TaskListener listener)
+            throws IOException, InterruptedException {
+        return prepare(node, url, credentials, listener, true);
+    }
+
+    private FilePath prepare(Node node, String url, StandardCredentials credentials, TaskListener listener,
+            boolean update) throws IOException, InterruptedException {
+        FilePath root = node.getRootPath();
+        if (root == null) {
+            return null;
+        }
+        String key = GitBucketMirrorCache.getKey(url, credentials != null ? credentials.getId() : null);
+        FilePath dir = getReferenceDir(root, url, credentials != null ? credentials.getId() : null);
+        synchronized (getLock(node.getNodeName(), key)) {
+            if (!dir.child("HEAD").exists()) {
+                listener.getLogger().println("Creating the reference repository " + dir);
+                fetch(dir, node, url, credentials, listener);
+            } else if (update) {
+                fetch(dir, node, url, credentials, listener);
+            }
+        }
+        synchronized (references) {
+            Reference reference = references.get(key);
+            if (reference == null) {
+                reference = new Reference(key, url);
+                references.put(key, reference);
+            }
+            reference.credentials = credentials;
+            reference.nodes.add(node.getNodeName());
+        }
+        return dir;
+    }
+
+    /**
+     * Refreshes the reference repositories of the pushed repository in the background.
+     */
+    void onPush(String repositoryUrl) {
+        String repository = GitBucketUtil.normalizeUrl(repositoryUrl);
+        Map<Reference, Set<String>> pushed = new HashMap<Reference, Set<String>>();
+        synchronized (references) {
+            // the references of the repository fetched with any credentials
+            for (Reference reference : references.values()) {
+                if (reference.repository.equalsIgnoreCase(repository)) {
+                    pushed.put(reference, new HashSet<String>(reference.nodes));
+                }
+            }
+        }
+        for (Map.Entry<Reference, Set<String>> e : pushed.entrySet()) {
+            final Reference reference = e.getKey();
+            for (final String nodeName : e.getValue()) {
+                // the fetch blocks on the remote, so it does not run on the shared timer
+                Computer.threadPoolForRemoting.submit(new Runnable() {
+                    @Override
+                    public void run() {
+                        refresh(nodeName, reference);
+                    }
+                });
+            }
+        }
+    }
+
+    private void refresh(String nodeName, Reference reference) {
+        Jenkins jenkins = Jenkins.getInstance();
+        Node node = nodeName.length() == 0 ? jenkins : jenkins.getNode(nodeName);
+        Computer computer = node != null ? node.toComputer() : null;
+        FilePath root = node != null ? node.getRootPath() : null;
+        if (computer == null || computer.isOffline() || root == null) {
+            return;
+        }
+        TaskListener listener = new LogTaskListener(LOGGER, Level.FINE);
+        StandardCredentials credentials;
+        synchronized (references) {
+            credentials = reference.credentials;
+        }
+        FilePath dir = getReferenceDir(root, reference.url, credentials != null ? credentials.getId() : null);
+        try {
+            synchronized (getLock(nodeName, reference.key)) {
+                if (dir.child("HEAD").exists()) {
+                    fetch(dir, node, reference.url, credentials, listener);
+                }
+            }
+        } catch (IOException e) {
+            LOGGER.log(Level.WARNING, "Failed to refresh " + dir + " on " + nodeName, e);
+        } catch (InterruptedException e) {
+            LOGGER.log(Level.WARNING, "Interrupted refreshing " + dir + " on " + nodeName, e);
+        }
+    }
+
+    private static void fetch(FilePath dir, Node node, String url, StandardCredentials credentials,
+            TaskListener listener) throws IOException, InterruptedException {
+        dir.mkdirs();
+        GitClient git = GitBucketGitClients.create(dir, node, listener);
+        try {
+            if (!dir.child("HEAD").exists()) {
+                git.init_().workspace(dir.getRemote()).bare(true).execute();
+                FilePath config = dir.child("config");
+                config.write(config.readToString() + "[gc]\n\tauto = 0\n\tpruneExpire = never\n", "UTF-8");
+            }
+            if (credentials != null) {
+                git.addDefaultCredentials(credentials);
+            }
+            git.fetch_().from(new URIish(url), Arrays.asList(
+                    new RefSpec("+refs/heads/*:refs/heads/*"),
+                    new RefSpec("+refs/tags/*:refs/tags/*"))).prune().execute();
+        } catch (URISyntaxException e) {
+            throw new IOException("Invalid repository url: " + url, e);
+        } catch (GitException e) {
+            throw new IOException("Failed to fetch " + url + " into " + dir, e);
+        }
+    }
+
+    private Object getLock(String nodeName, String key) {
+        String lockKey = nodeName + ' ' + key;
+        synchronized (locks) {
+            Object lock = locks.get(lockKey);
+            if (lock == null) {
+                lock = new Object();
+                locks.put(lockKey, lock);
+            }
+            return lock;
+        }
+    }
+
+    private static final class Reference {
+
+        private final String key;
+
+        private final String url;
+
+        // the normalized url, which the pushes are matched against
+        private final String repository;
+
+        private final Set<String> nodes = new HashSet<String>();
+
+        // the latest credentials of the id, which may have been updated
+        private StandardCredentials credentials;
+
+        Reference(String key, String url) {
+            this.key = key;
+            this.url = url;
+            this.repository = GitBucketUtil.normalizeUrl(url);
+        }
+    }
+
+    private static final Logger LOGGER = Logger.getLogger(GitBucketReferenceRepositories.class.getName());
+}
@@ -0,0 +1,88 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2016, Seiji Sogabe
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.jenkinsci.plugins.gitbucket;
+
+import com.cloudbees.plugins.credentials.common.StandardCredentials;
+import hudson.Extension;
+import hudson.FilePath;
+import hudson.model.Computer;
+import hudson.model.Node;
+import hudson.model.Run;
+import hudson.model.TaskListener;
+import hudson.plugins.git.GitException;
+import hudson.plugins.git.GitSCM;
+import hudson.plugins.git.UserRemoteConfig;
+import hudson.plugins.git.extensions.GitSCMExtension;
+import hudson.plugins.git.extensions.GitSCMExtensionDescriptor;
+import java.io.IOException;
+import org.jenkinsci.plugins.gitclient.CloneCommand;
+import org.jenkinsci.plugins.gitclient.GitClient;
+import org.kohsuke.stapler.DataBoundConstructor;
+
+/**
+ * Clones the GitBucket repository using a reference repository on the node.
+ *
+ * The reference repository is maintained by the plugin and refreshed when a
+ * push arrives, so a clone transfers only the objects pushed since.
+ */
+public class GitBucketReferenceRepository extends GitSCMExtension {
+
+    @DataBoundConstructor
+    public GitBucketReferenceRepository() {
+    }
+
+    @Override
+    public void decorateCloneCommand(GitSCM scm, Run<?, ?> build, GitClient git, TaskListener listener,
+            CloneCommand cmd) throws IOException, InterruptedException, GitException {
+        Computer computer = Computer.currentComputer();
+        Node node = computer != null ? computer.getNode() : null;
+        if (node == null || scm.getUserRemoteConfigs().isEmpty()) {
+            return;
+        }
+        // only the first repository is cloned
+        UserRemoteConfig remote = scm.getUserRemoteConfigs().get(0);
+        String url = remote.getUrl();
+        StandardCredentials credentials
+                = GitBucketGitClients.lookupCredentials(build.getParent(), url, remote.getCredentialsId());
+        try {
+            FilePath reference = GitBucketReferenceRepositories.get().prepare(node, url, credentials, listener);
+            if (reference != null) {
+                listener.getLogger().println("Using the reference repository " + reference);
+                cmd.reference(reference.getRemote());
+            }
+        } catch (IOException e) {
+            // clone without the reference
+            e.printStackTrace(listener.error("Failed to prepare the reference repository of " + url));
+        }
+    }
+
+    @Extension
+    public static class DescriptorImpl extends GitSCMExtensionDescriptor {
+
+        @Override
+        public String getDisplayName() {
+            return "Use GitBucket reference repository";
+        }
+    }
+}
@@ -0,0 +1,128 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2016, Seiji Sogabe
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.jenkinsci.plugins.gitbucket;
+
+import com.cloudbees.plugins.credentials.common.StandardCredentials;
+import hudson.model.TaskListener;
+import hudson.plugins.git.GitException;
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import jenkins.model.Jenkins;
+import org.eclipse.jgit.lib.ObjectId;
+import org.jenkinsci.plugins.gitclient.GitClient;
+
+/**
+ * Heads of the remote refs looked up for a WebHook delivery.
+ *
+ * All the jobs polled for a delivery share a single lookup per repository,
+ * ref and credentials. The lookups are discarded after a short time.
+ */
+class GitBucketRemoteHeads {
+
+    private static final GitBucketRemoteHeads INSTANCE = new GitBucketRemoteHeads(
+            Long.getLong(GitBucketRemoteHeads.class.getName() + ".ttl", 60 * 1000));
+
+    private final Map<String, Entry> entries = new LinkedHashMap<String, Entry>();
+
+    private final long ttl;
+
+    GitBucketRemoteHeads(long ttl) {
+        this.ttl = ttl;
+    }
+
+    static GitBucketRemoteHeads get() {
+        return INSTANCE;
+    }
+
+    /**
+     * Returns the head of the ref, looking it up only for the first job polled
+     * for the delivery.
+     *
+     * @return the head, or null if the ref does not exist.
+     */
+    ObjectId getHead(String url, String ref, String deliveryId, StandardCredentials credentials,
+            TaskListener listener) throws IOException, InterruptedException {
+        // a job must not see a head looked up with the credentials of another job
+        String credentialsId = credentials != null ? credentials.getId() : null;
+        Entry entry = getEntry(deliveryId + ' ' + url + ' ' + ref + ' ' + credentialsId);
+        synchronized (entry) {
+            if (entry.resolved) {
+                listener.getLogger().println("Using the head of " + ref + " looked up for " + deliveryId);
+                return entry.head;
+            }
+            entry.head = lookup(url, ref, credentials, listener);
+            entry.resolved = true;
+            return entry.head;
+        }
+    }
+
+    ObjectId lookup(String url, String ref, StandardCredentials credentials, TaskListener listener)
+            throws IOException, InterruptedException {
+        listener.getLogger().println("Looking up the head of " + ref + " in " + url);
+        GitClient git = GitBucketGitClients.create(Jenkins.getInstance().getRootDir(), listener);
+        if (credentials != null) {
+            git.addDefaultCredentials(credentials);
+        }
+        try {
+            return git.getHeadRev(url, ref);
+        } catch (GitException e) {
+            throw new IOException("Failed to look up " + ref + " in " + url, e);
+        }
+    }
+
+    synchronized int size() {
+        return entries.size();
+    }
+
+    private synchronized Entry getEntry(String key) {
+        long now = System.currentTimeMillis();
+        for (Iterator<Entry> it = entries.values().iterator(); it.hasNext();) {
+            if (it.next().expiresAt > now) {
+                break;
+            }
+            it.remove();
+        }
+        Entry entry = entries.get(key);
+        if (entry == null) {
+            entry = new Entry(now + ttl);
+            entries.put(key, entry);
+        }
+        return entry;
+    }
+
+    private static final class Entry {
+
+        private final long expiresAt;
+
+        private boolean resolved;
+
+        private ObjectId head;
+
+        Entry(long expiresAt) {
+            this.expiresAt = expiresAt;
+        }
+    }
+}
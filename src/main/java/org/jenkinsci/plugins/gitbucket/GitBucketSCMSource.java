@@ -0,0 +1,127 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2016, Seiji Sogabe
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.jenkinsci.plugins.gitbucket;
+
+import hudson.Extension;
+import hudson.plugins.git.browser.GitRepositoryBrowser;
+import java.net.MalformedURLException;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import jenkins.plugins.git.GitSCMSource;
+import jenkins.scm.api.SCMSource;
+import jenkins.scm.api.SCMSourceOwner;
+import jenkins.scm.api.SCMSourceOwners;
+import org.eclipse.jgit.transport.URIish;
+import org.kohsuke.stapler.DataBoundConstructor;
+import org.kohsuke.stapler.DataBoundSetter;
+
+/**
+ * Branch source for multibranch projects hosted on GitBucket.
+ *
+ * Branches are discovered from the GitBucket repository and re-indexed when
+ * {@link GitBucketWebHook} receives a push for the repository, so periodic
+ * scans are not needed.
+ */
+public class GitBucketSCMSource extends GitSCMSource {
+
+    private String browserUrl;
+
+    @DataBoundConstructor
+    public GitBucketSCMSource(String id, String remote, String credentialsId,
+            String includes, String excludes, boolean ignoreOnPushNotifications) {
+        super(id, remote, credentialsId, includes, excludes, ignoreOnPushNotifications);
+    }
+
+    public String getBrowserUrl() {
+        return browserUrl;
+    }
+
+    @DataBoundSetter
+    public void setBrowserUrl(String browserUrl) {
+        this.browserUrl = GitBucketUtil.trimEndSlash(browserUrl);
+    }
+
+    @Override
+    protected GitRepositoryBrowser getBrowser() {
+        String url = browserUrl != null ? browserUrl : GitBucketUtil.toBrowserUrl(getRemote());
+        if (url == null) {
+            return null;
+        }
+        try {
+            return new GitBucketBrowser(url + '/');
+        } catch (MalformedURLException e) {
+            LOGGER.log(Level.WARNING, "Invalid GitBucket URL: " + url, e);
+            return null;
+        }
+    }
+
+    /**
+     * Checks if this source tracks the given repository url.
+     */
+    boolean isMatch(String repositoryUrl) {
+        String remote = getRemote();
+        if (remote == null) {
+            return false;
+        }
+        try {
+            URIish uri = new URIish(remote).setUser(null).setPass(null);
+            return uri.toString().trim().equalsIgnoreCase(repositoryUrl);
+        } catch (Exception e) {
+            return false;
+        }
+    }
+
+    /**
+     * Notifies the owners of the sources tracking the pushed repository.
+     *
+     * Only the owners of the matching sources are re-indexed.
+     */
+    static void notifyPush(String repositoryUrl) {
+        for (SCMSourceOwner owner : SCMSourceOwners.all()) {
+            for (SCMSource source : owner.getSCMSources()) {
+                if (!(source instanceof GitBucketSCMSource)) {
+                    continue;
+                }
+                GitBucketSCMSource gbs = (GitBucketSCMSource) source;
+                if (gbs.isIgnoreOnPushNotifications() || !gbs.isMatch(repositoryUrl)) {
+                    continue;
+                }
+                LOGGER.log(Level.INFO, "Notify {0} of the push to {1}",
+                        new Object[]{owner.getFullName(), repositoryUrl});
+                owner.onSCMSourceUpdated(source);
+            }
+        }
+    }
+
+    @Extension
+    public static class DescriptorImpl extends GitSCMSource.DescriptorImpl {
+
+        @Override
+        public String getDisplayName() {
+            return "GitBucket";
+        }
+    }
+
+    private static final Logger LOGGER = Logger.getLogger(GitBucketSCMSource.class.getName());
+}
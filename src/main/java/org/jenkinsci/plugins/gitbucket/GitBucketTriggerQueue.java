@@ -0,0 +1,208 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2016, Seiji Sogabe
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.jenkinsci.plugins.gitbucket;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Runs the tasks of {@link GitBucketPushTrigger} with limited concurrency.
+ *
+ * High priority tasks are taken first. To keep normal tasks from starving,
+ * one normal task is taken after {@link #MAX_HIGH_IN_A_ROW} high priority
+ * tasks in a row.
+ *
+ * Within each priority, the repositories are served in weighted round robin,
+ * so that a flood of pushes to one repository does not delay the others.
+ */
+final class GitBucketTriggerQueue {
+
+    static final int MAX_HIGH_IN_A_ROW = 4;
+
+    private final ExecutorService executor;
+
+    private final FairQueue high = new FairQueue();
+
+    private final FairQueue normal = new FairQueue();
+
+    private Map<String, Integer> weights = Collections.emptyMap();
+
+    private int maxConcurrency;
+
+    private int running;
+
+    private int highInARow;
+
+    GitBucketTriggerQueue(ExecutorService executor, int maxConcurrency) {
+        this.executor = executor;
+        this.maxConcurrency = maxConcurrency;
+    }
+
+    synchronized void setMaxConcurrency(int maxConcurrency) {
+        this.maxConcurrency = maxConcurrency;
+        startWorkers();
+    }
+
+    /**
+     * @param weights the number of tasks taken in a row for each repository, 1 by default
+     */
+    synchronized void setWeights(Map<String, Integer> weights) {
+        this.weights = new HashMap<String, Integer>();
+        for (Map.Entry<String, Integer> e : weights.entrySet()) {
+            this.weights.put(e.getKey().toLowerCase(), e.getValue());
+        }
+    }
+
+    /**
+     * @param repository the repository which the task belongs to
+     */
+    synchronized void execute(Runnable task, String repository, boolean highPriority) {
+        String key = repository != null ? repository.toLowerCase() : "";
+        if (highPriority) {
+            high.add(key, task);
+        } else {
+            normal.add(key, task);
+        }
+        startWorkers();
+    }
+
+    synchronized int size() {
+        return high.size() + normal.size();
+    }
+
+    // must be called with the lock
+    private void startWorkers() {
+        while (running < maxConcurrency && running < size()) {
+            running++;
+            executor.submit(new Worker());
+        }
+    }
+
+    /**
+     * Takes the next task, or returns null and stops the worker if there is no task.
+     */
+    synchronized Runnable next() {
+        if (running > maxConcurrency || size() == 0) {
+            running--;
+            return null;
+        }
+        if (!high.isEmpty() && (normal.isEmpty() || highInARow < MAX_HIGH_IN_A_ROW)) {
+            highInARow++;
+            return high.poll();
+        }
+        highInARow = 0;
+        return normal.poll();
+    }
+
+    // must be called with the lock
+    private int getWeight(String key) {
+        Integer weight = weights.get(key);
+        return weight != null && weight > 0 ? weight : 1;
+    }
+
+    private synchronized void workerDied() {
+        running--;
+        startWorkers();
+    }
+
+    private final class Worker implements Runnable {
+
+        @Override
+        public void run() {
+            Runnable task;
+            while ((task = next()) != null) {
+                try {
+                    task.run();
+                } catch (RuntimeException e) {
+                    LOGGER.log(Level.WARNING, "Failed to run " + task, e);
+                } catch (Error e) {
+                    workerDied();
+                    throw e;
+                }
+            }
+        }
+    }
+
+    /**
+     * Queues of the tasks for each repository, served in weighted round robin.
+     */
+    private final class FairQueue {
+
+        private final Map<String, LinkedList<Runnable>> queues = new HashMap<String, LinkedList<Runnable>>();
+
+        private final LinkedList<String> ring = new LinkedList<String>();
+
+        private int credit;
+
+        private int size;
+
+        void add(String key, Runnable task) {
+            LinkedList<Runnable> queue = queues.get(key);
+            if (queue == null) {
+                queue = new LinkedList<Runnable>();
+                queues.put(key, queue);
+                ring.add(key);
+            }
+            queue.add(task);
+            size++;
+        }
+
+        Runnable poll() {
+            if (ring.isEmpty()) {
+                return null;
+            }
+            String key = ring.getFirst();
+            if (credit <= 0) {
+                credit = getWeight(key);
+            }
+            LinkedList<Runnable> queue = queues.get(key);
+            Runnable task = queue.poll();
+            size--;
+            credit--;
+            if (queue.isEmpty()) {
+                queues.remove(key);
+                ring.removeFirst();
+                credit = 0;
+            } else if (credit <= 0) {
+                ring.addLast(ring.removeFirst());
+            }
+            return task;
+        }
+
+        boolean isEmpty() {
+            return size == 0;
+        }
+
+        int size() {
+            return size;
+        }
+    }
+
+    private static final Logger LOGGER = Logger.getLogger(GitBucketTriggerQueue.class.getName());
+}
@@ -24,6 +24,8 @@
 package org.jenkinsci.plugins.gitbucket;
 
 import hudson.Util;
+import java.net.URISyntaxException;
+import org.eclipse.jgit.transport.URIish;
 
 /**
  * Utility
@@ -45,4 +47,90 @@ public final class GitBucketUtil {
         }
         return url.substring(0, u.length() - 1);
     }
+
+    /**
+     * Converts the clone url of GitBucket to the url of the repository page.
+     *
+     * e.g. http://host/gitbucket/git/owner/repo.git to http://host/gitbucket/owner/repo
+     */
+    public static String toBrowserUrl(String cloneUrl) {
+        String u = trimEndSlash(cloneUrl);
+        if (u == null || !u.startsWith("http")) {
+            return null;
+        }
+        if (u.endsWith(".git")) {
+            u = u.substring(0, u.length() - ".git".length());
+        }
+        int index = u.lastIndexOf("/git/");
+        if (index < 0) {
+            return null;
+        }
+        return u.substring(0, index) + u.substring(index + "/git".length());
+    }
+
+    /**
+     * Returns the repository url without user and password in lower case, as
+     * compared with the url pushed to {@link GitBucketWebHook}.
+     */
+    public static String toRepositoryKey(String url) {
+        try {
+            return new URIish(url).setUser(null).setPass(null).toString().trim().toLowerCase();
+        } catch (URISyntaxException e) {
+            return url.trim().toLowerCase();
+        }
+    }
+
+    /**
+     * Returns the url without user, password, ".git" suffix and trailing
+     * slash, and with the host in lower case, so that the spellings of the
+     * same repository are equal.
+     */
+    public static String normalizeUrl(String url) {
+        String u = Util.fixEmptyAndTrim(url);
+        if (u == null) {
+            return null;
+        }
+        try {
+            URIish uri = new URIish(u).setUser(null).setPass(null);
+            if (uri.getHost() != null) {
+                uri = uri.setHost(uri.getHost().toLowerCase());
+            }
+            String path = trimEndSlash(uri.getPath());
+            if (path != null && path.endsWith(".git")) {
+                path = path.substring(0, path.length() - ".git".length());
+            }
+            return uri.setPath(trimEndSlash(path)).toString();
+        } catch (URISyntaxException e) {
+            return u;
+        }
+    }
+
+    /**
+     * Returns "owner/repo" of the clone url of GitBucket, as the name of the
+     * repository pushed to {@link GitBucketWebHook}, or null.
+     *
+     * e.g. http://host/gitbucket/git/owner/repo.git to owner/repo
+     */
+    public static String toRepositoryName(String url) {
+        String path;
+        try {
+            path = new URIish(url).getPath();
+        } catch (URISyntaxException e) {
+            return null;
+        }
+        path = trimEndSlash(path);
+        if (path == null) {
+            return null;
+        }
+        if (path.endsWith(".git")) {
+            path = path.substring(0, path.length() - ".git".length());
+        }
+        int repo = path.lastIndexOf('/');
+        if (repo <= 0) {
+            return null;
+        }
+        int owner = path.lastIndexOf('/', repo - 1);
+        String name = path.substring(owner + 1);
+        return name.startsWith("/") || name.endsWith("/") ? null : name;
+    }
 }
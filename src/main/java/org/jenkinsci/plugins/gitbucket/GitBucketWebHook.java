@@ -33,8 +33,10 @@ import hudson.security.csrf.CrumbExclusion;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.UUID;
 import java.util.logging.Level;
 import java.util.logging.Logger;
+import java.util.regex.Pattern;
 import javax.servlet.FilterChain;
 import javax.servlet.ServletException;
 import javax.servlet.http.HttpServletRequest;
@@ -78,8 +80,8 @@ public class GitBucketWebHook implements UnprotectedRootAction {
     public void doIndex(StaplerRequest req) {
         String event = req.getHeader("X-Github-Event");
         LOGGER.log(Level.FINE, "WebHook called. event: {0}", event);
-        if (!"push".equals(event)) {
-            LOGGER.log(Level.FINE, "Only push event can be accepted.");
+        if (!"push".equals(event) && !"create".equals(event) && !"delete".equals(event)) {
+            LOGGER.log(Level.FINE, "Only push, create and delete events can be accepted.");
             return;
         }
 
@@ -89,14 +91,22 @@ public class GitBucketWebHook implements UnprotectedRootAction {
                     "Not intended to be browsed interactively (must specify payload parameter)");
         }
 
-        processPayload(payload);
+        processPayload(payload, "push".equals(event), req.getHeader("X-Github-Delivery"));
     }
 
-    private void processPayload(String payload) {
+    private void processPayload(String payload, boolean push, String deliveryId) {
+        long receivedAt = System.currentTimeMillis();
         JSONObject json = JSONObject.fromObject(payload);
         LOGGER.log(Level.FINE, "payload: {0}", json.toString(4));
 
         GitBucketPushRequest req = GitBucketPushRequest.create(json);
+        // used as a file name, so accept only the safe ids
+        if (deliveryId == null || !DELIVERY_ID.matcher(deliveryId).matches()) {
+            deliveryId = UUID.randomUUID().toString();
+        }
+        req.setDeliveryId(deliveryId);
+        req.setReceivedAt(receivedAt);
+        LOGGER.log(Level.FINE, "Delivery {0} received.", deliveryId);
         String repositoryUrl = getRepositoryUrl(req);
         if (repositoryUrl == null) {
             LOGGER.log(Level.WARNING, "No repository url found.");
@@ -106,6 +116,13 @@ public class GitBucketWebHook implements UnprotectedRootAction {
         Authentication old = SecurityContextHolder.getContext().getAuthentication();
         SecurityContextHolder.getContext().setAuthentication(ACL.SYSTEM);
         try {
+            GitBucketSCMSource.notifyPush(repositoryUrl.toLowerCase());
+            if (!push) {
+                return;
+            }
+            String repositoryKey = GitBucketUtil.toRepositoryKey(repositoryUrl);
+            GitBucketRefHeadTable.get().update(repositoryKey, req.getRef(), getHead(req), receivedAt);
+            GitBucketReferenceRepositories.get().onPush(repositoryKey);
             for (AbstractProject<?, ?> job : Jenkins.getInstance().getAllItems(AbstractProject.class)) {
                 GitBucketPushTrigger trigger = job.getTrigger(GitBucketPushTrigger.class);
                 if (trigger == null) {
@@ -130,6 +147,13 @@ public class GitBucketWebHook implements UnprotectedRootAction {
         return (cloneUrl != null) ? cloneUrl : url;
     }
 
+    private String getHead(GitBucketPushRequest req) {
+        if (req.getAfter() != null) {
+            return req.getAfter();
+        }
+        return req.getLastCommit() != null ? req.getLastCommit().getId() : null;
+    }
+
     private static class RepositoryUrlCollector {
 
         public static List<String> collect(AbstractProject<?, ?> job) {
@@ -182,5 +206,7 @@ public class GitBucketWebHook implements UnprotectedRootAction {
         }
     }
 
+    private static final Pattern DELIVERY_ID = Pattern.compile("[A-Za-z0-9_-]{1,64}");
+
     private static final Logger LOGGER = Logger.getLogger(GitBucketWebHook.class.getName());
 }
@@ -0,0 +1,99 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2016, Seiji Sogabe
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.jenkinsci.plugins.gitbucket;
+
+import org.junit.Test;
+import static org.hamcrest.CoreMatchers.*;
+import static org.junit.Assert.assertThat;
+
+/**
+ * Test for {@link GitBucketCircuitBreaker} class.
+ */
+public class GitBucketCircuitBreakerTest {
+
+    @Test
+    public void testOpen() {
+        GitBucketCircuitBreaker breaker = new GitBucketCircuitBreaker(3, 1000L);
+        breaker.record("gitbucket", false, 0L);
+        breaker.record("gitbucket", false, 0L);
+
+        assertThat(breaker.allow("gitbucket", 0L), is(true));
+
+        breaker.record("gitbucket", false, 0L);
+
+        assertThat(breaker.isOpen("gitbucket"), is(true));
+        assertThat(breaker.allow("gitbucket", 500L), is(false));
+        assertThat(breaker.getRemainingTime("gitbucket", 500L), is(500L));
+        assertThat(breaker.allow("other", 500L), is(true));
+    }
+
+    @Test
+    public void testOpen_ResetBySuccess() {
+        GitBucketCircuitBreaker breaker = new GitBucketCircuitBreaker(2, 1000L);
+        breaker.record("gitbucket", false, 0L);
+        breaker.record("gitbucket", true, 0L);
+        breaker.record("gitbucket", false, 0L);
+
+        assertThat(breaker.isOpen("gitbucket"), is(false));
+    }
+
+    @Test
+    public void testProbe() {
+        GitBucketCircuitBreaker breaker = new GitBucketCircuitBreaker(1, 1000L);
+        breaker.record("gitbucket", false, 0L);
+
+        assertThat(breaker.allow("gitbucket", 1000L), is(true));
+        // only one probe at a time
+        assertThat(breaker.allow("gitbucket", 1000L), is(false));
+
+        breaker.record("gitbucket", true, 1100L);
+
+        assertThat(breaker.isOpen("gitbucket"), is(false));
+        assertThat(breaker.allow("gitbucket", 1100L), is(true));
+    }
+
+    @Test
+    public void testProbe_Failed() {
+        GitBucketCircuitBreaker breaker = new GitBucketCircuitBreaker(1, 1000L);
+        breaker.record("gitbucket", false, 0L);
+        breaker.allow("gitbucket", 1000L);
+
+        breaker.record("gitbucket", false, 1100L);
+
+        assertThat(breaker.allow("gitbucket", 1500L), is(false));
+        assertThat(breaker.allow("gitbucket", 2100L), is(true));
+    }
+
+    @Test
+    public void testProbe_Released() {
+        GitBucketCircuitBreaker breaker = new GitBucketCircuitBreaker(1, 1000L);
+        breaker.record("gitbucket", false, 0L);
+        breaker.allow("gitbucket", 1000L);
+
+        breaker.release("gitbucket");
+
+        assertThat(breaker.isOpen("gitbucket"), is(true));
+        assertThat(breaker.allow("gitbucket", 1100L), is(true));
+    }
+}
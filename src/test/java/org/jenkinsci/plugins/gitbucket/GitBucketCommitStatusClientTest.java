@@ -0,0 +1,184 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2016, Seiji Sogabe
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.jenkinsci.plugins.gitbucket;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import net.sf.json.JSONObject;
+import org.apache.commons.io.IOUtils;
+import org.jenkinsci.plugins.gitbucket.GitBucketCommitStatusClient.Status;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import static org.hamcrest.CoreMatchers.*;
+import static org.junit.Assert.assertThat;
+
+/**
+ * Test for {@link GitBucketCommitStatusClient} class against a local HTTP server.
+ */
+public class GitBucketCommitStatusClientTest {
+
+    private HttpServer server;
+
+    private final List<JSONObject> received = new CopyOnWriteArrayList<JSONObject>();
+
+    private final List<String> authorizations = new CopyOnWriteArrayList<String>();
+
+    private final AtomicInteger failures = new AtomicInteger();
+
+    private final AtomicInteger failureCode = new AtomicInteger(500);
+
+    private final AtomicInteger requests = new AtomicInteger();
+
+    private CountDownLatch latch;
+
+    private GitBucketCommitStatusClient target;
+
+    @Before
+    public void setUp() throws Exception {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                String body = IOUtils.toString(exchange.getRequestBody(), "UTF-8");
+                requests.incrementAndGet();
+                int code = 201;
+                if (failures.getAndDecrement() > 0) {
+                    code = failureCode.get();
+                } else {
+                    received.add(JSONObject.fromObject(body));
+                    authorizations.add(exchange.getRequestHeaders().getFirst("Authorization"));
+                }
+                exchange.sendResponseHeaders(code, -1);
+                exchange.close();
+                if (code == 201) {
+                    latch.countDown();
+                }
+            }
+        });
+        server.start();
+        target = new GitBucketCommitStatusClient(200, 3);
+    }
+
+    @After
+    public void tearDown() {
+        target.shutdown();
+        server.stop(0);
+    }
+
+    @Test
+    public void testSubmit() throws Exception {
+        latch = new CountDownLatch(1);
+
+        target.submit(createStatus("sha1", "success"));
+
+        assertThat(latch.await(10, TimeUnit.SECONDS), is(true));
+        assertThat(received.size(), is(1));
+        assertThat(received.get(0).getString("state"), is("success"));
+        assertThat(received.get(0).getString("context"), is("jenkins"));
+        assertThat(authorizations.get(0), is("token secret"));
+    }
+
+    @Test
+    public void testSubmit_Coalesce() throws Exception {
+        latch = new CountDownLatch(2);
+
+        target.submit(createStatus("sha1", "pending"));
+        target.submit(createStatus("sha1", "success"));
+        target.submit(createStatus("sha2", "pending"));
+
+        assertThat(latch.await(10, TimeUnit.SECONDS), is(true));
+        Thread.sleep(500);
+        assertThat(received.size(), is(2));
+        assertThat(received.get(0).getString("state"), is("success"));
+        assertThat(received.get(1).getString("state"), is("pending"));
+    }
+
+    @Test
+    public void testSubmit_Retry() throws Exception {
+        latch = new CountDownLatch(1);
+        failures.set(2);
+
+        target.submit(createStatus("sha1", "failure"));
+
+        assertThat(latch.await(10, TimeUnit.SECONDS), is(true));
+        assertThat(received.size(), is(1));
+        assertThat(received.get(0).getString("state"), is("failure"));
+        assertThat(target.getPendingCount(), is(0));
+    }
+
+    @Test
+    public void testSubmit_GiveUp() throws Exception {
+        latch = new CountDownLatch(1);
+        failures.set(10);
+
+        target.submit(createStatus("sha1", "failure"));
+
+        assertThat(latch.await(3, TimeUnit.SECONDS), is(false));
+        assertThat(received.isEmpty(), is(true));
+        assertThat(target.getPendingCount(), is(0));
+    }
+
+    @Test
+    public void testSubmit_Rejected() throws Exception {
+        latch = new CountDownLatch(1);
+        failures.set(1);
+        failureCode.set(422);
+
+        target.submit(createStatus("sha1", "failure"));
+
+        assertThat(latch.await(2, TimeUnit.SECONDS), is(false));
+        assertThat(requests.get(), is(1));
+        assertThat(received.isEmpty(), is(true));
+        assertThat(target.getPendingCount(), is(0));
+    }
+
+    @Test
+    public void testSubmit_RejectedDoesNotStopBatch() throws Exception {
+        latch = new CountDownLatch(1);
+        failures.set(1);
+        failureCode.set(404);
+
+        target.submit(createStatus("sha1", "success"));
+        target.submit(createStatus("sha2", "success"));
+
+        assertThat(latch.await(10, TimeUnit.SECONDS), is(true));
+        assertThat(requests.get(), is(2));
+        assertThat(received.size(), is(1));
+    }
+
+    private Status createStatus(String sha, String state) {
+        String url = "http://127.0.0.1:" + server.getAddress().getPort()
+                + "/api/v3/repos/sogabe/gitbucket-plugin/statuses/" + sha;
+        return new Status(url, state, "jenkins", null, null, "secret");
+    }
+}
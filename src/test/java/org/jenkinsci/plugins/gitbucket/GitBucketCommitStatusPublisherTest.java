@@ -0,0 +1,98 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2016, Seiji Sogabe
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.jenkinsci.plugins.gitbucket;
+
+import hudson.model.Result;
+import org.junit.Test;
+import static org.hamcrest.CoreMatchers.*;
+import static org.junit.Assert.assertThat;
+
+/**
+ * Test for {@link GitBucketCommitStatusPublisher} class.
+ */
+public class GitBucketCommitStatusPublisherTest {
+
+    @Test
+    public void testGetStatusesUrl() {
+        String actual = GitBucketCommitStatusPublisher.getStatusesUrl(
+                "http://localhost/gitbucket/sogabe/gitbucket-plugin", "1234");
+
+        assertThat(actual, is("http://localhost/gitbucket/api/v3/repos/sogabe/gitbucket-plugin/statuses/1234"));
+    }
+
+    @Test
+    public void testGetStatusesUrl_EndWithSlash() {
+        String actual = GitBucketCommitStatusPublisher.getStatusesUrl(
+                "http://localhost/sogabe/gitbucket-plugin/", "1234");
+
+        assertThat(actual, is("http://localhost/api/v3/repos/sogabe/gitbucket-plugin/statuses/1234"));
+    }
+
+    @Test
+    public void testGetStatusesUrl_NoOwner() {
+        assertThat(GitBucketCommitStatusPublisher.getStatusesUrl("http://localhost/gitbucket-plugin", "1234"),
+                is(nullValue()));
+        assertThat(GitBucketCommitStatusPublisher.getStatusesUrl("http://localhost", "1234"), is(nullValue()));
+        assertThat(GitBucketCommitStatusPublisher.getStatusesUrl("http://localhost//repo", "1234"), is(nullValue()));
+    }
+
+    @Test
+    public void testGetStatusesUrl_Malformed() {
+        assertThat(GitBucketCommitStatusPublisher.getStatusesUrl("localhost", "1234"), is(nullValue()));
+        assertThat(GitBucketCommitStatusPublisher.getStatusesUrl("sogabe/gitbucket-plugin", "1234"),
+                is(nullValue()));
+        assertThat(GitBucketCommitStatusPublisher.getStatusesUrl("", "1234"), is(nullValue()));
+    }
+
+    @Test
+    public void testToState_Success() {
+        assertThat(GitBucketCommitStatusPublisher.toState(Result.SUCCESS), is("success"));
+    }
+
+    @Test
+    public void testToState_Unstable() {
+        assertThat(GitBucketCommitStatusPublisher.toState(Result.UNSTABLE), is("failure"));
+    }
+
+    @Test
+    public void testToState_Failure() {
+        assertThat(GitBucketCommitStatusPublisher.toState(Result.FAILURE), is("failure"));
+    }
+
+    @Test
+    public void testToState_NotBuilt() {
+        assertThat(GitBucketCommitStatusPublisher.toState(Result.NOT_BUILT), is("error"));
+    }
+
+    @Test
+    public void testToState_Aborted() {
+        assertThat(GitBucketCommitStatusPublisher.toState(Result.ABORTED), is("error"));
+    }
+
+    @Test
+    public void testToState_Running() {
+        // the result is not set yet while the publishers run
+        assertThat(GitBucketCommitStatusPublisher.toState(null), is("success"));
+    }
+}
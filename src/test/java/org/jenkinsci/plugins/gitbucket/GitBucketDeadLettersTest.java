@@ -0,0 +1,97 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2016, Seiji Sogabe
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.jenkinsci.plugins.gitbucket;
+
+import java.util.List;
+import org.jenkinsci.plugins.gitbucket.GitBucketDeadLetters.Entry;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import static org.hamcrest.CoreMatchers.*;
+import static org.junit.Assert.assertThat;
+
+/**
+ * Test for {@link GitBucketDeadLetters} class.
+ */
+public class GitBucketDeadLettersTest {
+
+    @Rule
+    public TemporaryFolder tmp = new TemporaryFolder();
+
+    @Test
+    public void testAdd() {
+        GitBucketDeadLetters letters = GitBucketDeadLetters.load(tmp.getRoot());
+        letters.add("folder/job", createRequest("1234"), 6, "Polling timed out", 1000L);
+
+        List<Entry> actual = GitBucketDeadLetters.load(tmp.getRoot()).getEntries();
+
+        assertThat(actual.size(), is(1));
+        assertThat(actual.get(0).getJobName(), is("folder/job"));
+        assertThat(actual.get(0).getRequest().getRef(), is("refs/heads/master"));
+        assertThat(actual.get(0).getRequest().getDeliveryId(), is("1234"));
+        assertThat(actual.get(0).getAttempts(), is(6));
+        assertThat(actual.get(0).getReason(), is("Polling timed out"));
+    }
+
+    @Test
+    public void testAdd_Max() {
+        GitBucketDeadLetters letters = GitBucketDeadLetters.load(tmp.getRoot());
+        for (int i = 0; i <= GitBucketDeadLetters.MAX_ENTRIES; i++) {
+            letters.add("job", createRequest(String.valueOf(i)), 1, "Polling failed", i);
+        }
+
+        List<Entry> actual = letters.getEntries();
+
+        assertThat(actual.size(), is(GitBucketDeadLetters.MAX_ENTRIES));
+        // newest first
+        assertThat(actual.get(0).getRequest().getDeliveryId(), is(String.valueOf(GitBucketDeadLetters.MAX_ENTRIES)));
+    }
+
+    @Test
+    public void testGet() {
+        GitBucketDeadLetters letters = GitBucketDeadLetters.load(tmp.getRoot());
+        Entry entry = letters.add("job", createRequest("1234"), 1, "Polling failed", 1000L);
+
+        assertThat(letters.get(entry.getId()), is(entry));
+        assertThat(letters.get("unknown"), nullValue());
+        assertThat(letters.getEntries().size(), is(1));
+    }
+
+    @Test
+    public void testRemove() {
+        GitBucketDeadLetters letters = GitBucketDeadLetters.load(tmp.getRoot());
+        Entry entry = letters.add("job", createRequest("1234"), 1, "Polling failed", 1000L);
+
+        assertThat(letters.remove("unknown"), nullValue());
+        assertThat(letters.remove(entry.getId()), is(entry));
+        assertThat(GitBucketDeadLetters.load(tmp.getRoot()).getEntries().isEmpty(), is(true));
+    }
+
+    private GitBucketPushRequest createRequest(String deliveryId) {
+        GitBucketPushRequest req = new GitBucketPushRequest();
+        req.setRef("refs/heads/master");
+        req.setDeliveryId(deliveryId);
+        return req;
+    }
+}
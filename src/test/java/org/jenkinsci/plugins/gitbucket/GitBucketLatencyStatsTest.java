@@ -0,0 +1,73 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2016, Seiji Sogabe
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.jenkinsci.plugins.gitbucket;
+
+import java.util.ArrayList;
+import java.util.List;
+import org.jenkinsci.plugins.gitbucket.GitBucketLatencyStats.Stage;
+import org.junit.Test;
+import static org.hamcrest.CoreMatchers.*;
+import static org.junit.Assert.assertThat;
+
+/**
+ * Test for {@link GitBucketLatencyStats} class.
+ */
+public class GitBucketLatencyStatsTest {
+
+    @Test
+    public void testPercentile() {
+        long[] sorted = {10, 20, 30, 40, 50, 60, 70, 80, 90, 100};
+
+        assertThat(GitBucketLatencyStats.percentile(sorted, 50), is(50L));
+        assertThat(GitBucketLatencyStats.percentile(sorted, 90), is(90L));
+        assertThat(GitBucketLatencyStats.percentile(sorted, 99), is(100L));
+        assertThat(GitBucketLatencyStats.percentile(sorted, 0), is(10L));
+    }
+
+    @Test
+    public void testPercentile_Empty() {
+        assertThat(GitBucketLatencyStats.percentile(new long[0], 50), is(0L));
+    }
+
+    @Test
+    public void testGetStages() {
+        List<long[]> samples = new ArrayList<long[]>();
+        for (int i = 100; i > 0; i--) {
+            long[] sample = new long[GitBucketPushTimings.STAGES.length];
+            sample[2] = i;
+            samples.add(sample);
+        }
+
+        GitBucketLatencyStats stats = new GitBucketLatencyStats(samples);
+
+        assertThat(stats.getCount(), is(100));
+        Stage polling = stats.getStages().get(2);
+        assertThat(polling.getName(), is("Polling"));
+        assertThat(polling.getMedian(), is(50L));
+        assertThat(polling.getP90(), is(90L));
+        assertThat(polling.getP99(), is(99L));
+        assertThat(polling.getMax(), is(100L));
+        assertThat(stats.getStages().get(0).getMax(), is(0L));
+    }
+}
@@ -26,6 +26,10 @@ package org.jenkinsci.plugins.gitbucket;
 import hudson.MarkupText;
 import hudson.model.FreeStyleBuild;
 import hudson.model.FreeStyleProject;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.jenkinsci.plugins.gitbucket.GitBucketLinkAnnotator.LinkMarkup;
 import org.junit.Test;
 
 import static org.junit.Assert.assertEquals;
@@ -160,6 +164,69 @@ public class GitBucketLinkAnnotatorTest {
                 "<a href='" + GITBUCKET_URL + "wiki/GitBucket'>wiki GitBucket</a> is a Github clone.");
     }
 
+    @Test
+    public void testAnnotateUserDefinedMarkupText() {
+        List<GitBucketLinkRule> rules = new ArrayList<GitBucketLinkRule>(GitBucketLinkAnnotator.DEFAULT_RULES);
+        rules.addAll(Arrays.asList(
+                new GitBucketLinkRule("\\b([A-Z]+-\\d+)\\b", "https://jira.example.com/browse/$1"),
+                new GitBucketLinkRule("milestone\\s+(\\d+)", "milestones/$1")));
+        LinkMarkup markup = new LinkMarkup(rules);
+
+        assertAnnotatedTextEquals(markup,
+                "JENKINS-123 Fixed XSS.",
+                "<a href='https://jira.example.com/browse/JENKINS-123'>JENKINS-123</a> Fixed XSS.");
+        assertAnnotatedTextEquals(markup,
+                "(fix #1) milestone 2",
+                "(<a href='" + GITBUCKET_URL + "issues/1'>fix #1</a>) "
+                        + "<a href='" + GITBUCKET_URL + "milestones/2'>milestone 2</a>");
+    }
+
+    @Test
+    public void testAnnotateUserDefinedMarkupText_WholeWords() {
+        LinkMarkup markup = new LinkMarkup(Arrays.asList(
+                new GitBucketLinkRule("#(\\d+)", "issues/$1"),
+                new GitBucketLinkRule("[A-Z]+-\\d+", "https://jira.example.com/browse/$0")));
+
+        assertAnnotatedTextEquals(markup, "prefix#1", "prefix#1");
+        // only the built-in rules ignore case
+        assertAnnotatedTextEquals(markup, "utf-8", "utf-8");
+        assertAnnotatedTextEquals(markup,
+                "(#1)",
+                "(<a href='" + GITBUCKET_URL + "issues/1'>#1</a>)");
+    }
+
+    @Test
+    public void testAnnotateUserDefinedMarkupText_UnsafeHref() {
+        LinkMarkup markup = new LinkMarkup(Arrays.asList(
+                new GitBucketLinkRule("xss-(\\d+)", "javascript:alert($1)"),
+                new GitBucketLinkRule("quote-(\\w+)", "q/$1'onmouseover='alert(1)"),
+                new GitBucketLinkRule("root-(\\d+)", "/root/$1")));
+
+        assertAnnotatedTextEquals(markup, "xss-1", "xss-1");
+        MarkupText quoted = new MarkupText("quote-a");
+        new GitBucketLinkAnnotator().annotate(quoted, GITBUCKET_URL, markup);
+        assertEquals(false, quoted.toString(false).contains("'onmouseover"));
+        assertAnnotatedTextEquals(markup, "root-1", "<a href='/root/1'>root-1</a>");
+    }
+
+    @Test
+    public void testAnnotateInvalidRule() {
+        LinkMarkup markup = new LinkMarkup(Arrays.asList(
+                new GitBucketLinkRule("(unclosed", "issues/$1"),
+                new GitBucketLinkRule("pull\\s+#?(\\d+)", "pulls/$1")));
+
+        assertAnnotatedTextEquals(markup,
+                "(unclosed pull #1",
+                "(unclosed <a href='" + GITBUCKET_URL + "pulls/1'>pull #1</a>");
+    }
+
+    private void assertAnnotatedTextEquals(LinkMarkup markup, String originalText, String expectedAnnotatedText) {
+        MarkupText markupText = new MarkupText(originalText);
+        GitBucketLinkAnnotator annotator = new GitBucketLinkAnnotator();
+        annotator.annotate(markupText, GITBUCKET_URL, markup);
+        assertEquals(expectedAnnotatedText, markupText.toString(false));
+    }
+
     private void assertAnnotatedTextEquals(String originalText, String expectedAnnotatedText) {
         MarkupText markupText = new MarkupText(originalText);
         GitBucketLinkAnnotator annotator = new GitBucketLinkAnnotator();
@@ -0,0 +1,114 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2016, Seiji Sogabe
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.jenkinsci.plugins.gitbucket;
+
+import hudson.EnvVars;
+import hudson.model.TaskListener;
+import hudson.util.StreamTaskListener;
+import java.io.File;
+import org.apache.commons.io.FileUtils;
+import org.eclipse.jgit.lib.ObjectId;
+import org.jenkinsci.plugins.gitclient.Git;
+import org.jenkinsci.plugins.gitclient.GitClient;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.jvnet.hudson.test.JenkinsRule;
+import static org.hamcrest.CoreMatchers.*;
+import static org.junit.Assert.assertThat;
+
+/**
+ * Test for {@link GitBucketMirrorCache} class.
+ */
+public class GitBucketMirrorCacheTest {
+
+    @Rule
+    public JenkinsRule j = new JenkinsRule();
+
+    private TaskListener listener;
+
+    private File repo;
+
+    private GitClient git;
+
+    @Before
+    public void setUp() throws Exception {
+        listener = StreamTaskListener.fromStdout();
+        repo = j.createTmpDir();
+        git = Git.with(listener, new EnvVars()).in(repo).getClient();
+        git.init();
+        git.setAuthor("jenkins", "jenkins@example.com");
+        git.setCommitter("jenkins", "jenkins@example.com");
+    }
+
+    @Test
+    public void testFetch() throws Exception {
+        ObjectId first = commit("first");
+        String url = repo.getAbsolutePath();
+        GitBucketMirrorCache target = new GitBucketMirrorCache(j.createTmpDir());
+
+        assertThat(target.getHead(url, null, "refs/heads/master", listener), is(nullValue()));
+
+        target.fetch(url, "delivery-1", null, listener);
+        assertThat(target.getHead(url, null, "refs/heads/master", listener), is(first));
+        assertThat(target.getHead(url, null, "refs/heads/feature", listener), is(nullValue()));
+
+        ObjectId second = commit("second");
+
+        // fetched only once per delivery
+        target.fetch(url, "delivery-1", null, listener);
+        assertThat(target.getHead(url, null, "refs/heads/master", listener), is(first));
+
+        target.fetch(url, "delivery-2", null, listener);
+        assertThat(target.getHead(url, null, "refs/heads/master", listener), is(second));
+    }
+
+    @Test
+    public void testFetch_SameRepository() throws Exception {
+        ObjectId first = commit("first");
+        String url = repo.getAbsolutePath();
+        GitBucketMirrorCache target = new GitBucketMirrorCache(j.createTmpDir());
+
+        target.fetch(url + "/", "delivery-1", null, listener);
+
+        assertThat(target.getHead(url, null, "refs/heads/master", listener), is(first));
+    }
+
+    @Test
+    public void testGetKey() {
+        String key = GitBucketMirrorCache.getKey("http://localhost/git/owner/repo.git", null);
+
+        assertThat(GitBucketMirrorCache.getKey("http://user@LocalHost/git/owner/repo/", null), is(key));
+        assertThat(GitBucketMirrorCache.getKey("http://localhost/git/owner/repo.git", "credentials"), not(key));
+        assertThat(GitBucketMirrorCache.getKey("http://localhost/git/owner/repo.git", "credentials"),
+                not(GitBucketMirrorCache.getKey("http://localhost/git/owner/repo.git", "other")));
+    }
+
+    private ObjectId commit(String message) throws Exception {
+        FileUtils.writeStringToFile(new File(repo, "file"), message);
+        git.add("file");
+        git.commit(message);
+        return git.revParse("HEAD");
+    }
+}
@@ -0,0 +1,65 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2016, Seiji Sogabe
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.jenkinsci.plugins.gitbucket;
+
+import hudson.model.Cause;
+import java.util.Arrays;
+import java.util.List;
+import org.jenkinsci.plugins.gitbucket.GitBucketPushTrigger.GitBucketPushCause;
+import org.junit.Test;
+import static org.hamcrest.CoreMatchers.*;
+import static org.junit.Assert.assertThat;
+
+/**
+ * Test for {@link GitBucketPollingLogAction} class.
+ */
+public class GitBucketPollingLogActionTest {
+
+    @Test
+    public void testGetPushCauses() {
+        GitBucketPushCause first = new GitBucketPushCause("user", "refs/heads/master", "sha1", "1111");
+        GitBucketPushCause second = new GitBucketPushCause("user", "refs/heads/master", "sha2", "2222");
+        first.setPollingLogId("1111");
+        second.setPollingLogId("1111");
+
+        List<GitBucketPushCause> actual = GitBucketPollingLogAction.getPushCauses(Arrays.<Cause>asList(
+                first, new GitBucketPushCause("user"), second, new Cause.RemoteCause("localhost", null), second));
+
+        // one per delivery, sharing the log polled together
+        assertThat(actual.size(), is(2));
+        assertThat(actual.get(0).getDeliveryId(), is("1111"));
+        assertThat(actual.get(1).getDeliveryId(), is("2222"));
+        assertThat(actual.get(1).getPollingLogId(), is("1111"));
+    }
+
+    @Test
+    public void testGetPushCauses_OlderVersion() {
+        GitBucketPushCause cause = new GitBucketPushCause("user", "refs/heads/master", "sha1", "1111");
+
+        List<GitBucketPushCause> actual = GitBucketPollingLogAction.getPushCauses(Arrays.<Cause>asList(cause));
+
+        assertThat(actual.size(), is(1));
+        assertThat(actual.get(0).getPollingLogId(), is("1111"));
+    }
+}
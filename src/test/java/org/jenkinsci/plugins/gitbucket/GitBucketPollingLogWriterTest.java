@@ -0,0 +1,123 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2016, Seiji Sogabe
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.jenkinsci.plugins.gitbucket;
+
+import hudson.Util;
+import hudson.util.ByteBuffer;
+import java.io.File;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import static org.hamcrest.CoreMatchers.*;
+import static org.junit.Assert.assertThat;
+
+/**
+ * Test for {@link GitBucketPollingLogWriter} class.
+ */
+public class GitBucketPollingLogWriterTest {
+
+    @Rule
+    public TemporaryFolder tmp = new TemporaryFolder();
+
+    private ScheduledExecutorService executor;
+
+    @Before
+    public void setUp() {
+        executor = Executors.newSingleThreadScheduledExecutor();
+    }
+
+    @After
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void testClose_KeepsLatestLog() throws Exception {
+        GitBucketPollingLogWriter target = new GitBucketPollingLogWriter(executor, 60 * 1000, 1024);
+        File file = new File(tmp.getRoot(), "polling.log");
+
+        target.close(file, log(target, file, "first"));
+        target.close(file, log(target, file, "second"));
+
+        assertThat(file.exists(), is(false));
+        assertThat(target.getBuffer(file).toString(), is("second"));
+        assertThat(target.getPendingBytes(), is(6L));
+
+        target.flush();
+
+        assertThat(Util.loadFile(file), is("second"));
+        assertThat(target.getBuffer(file), is(nullValue()));
+        assertThat(target.getPendingBytes(), is(0L));
+    }
+
+    @Test
+    public void testClose_FlushesInBackground() throws Exception {
+        GitBucketPollingLogWriter target = new GitBucketPollingLogWriter(executor, 10, 1024);
+        File file = new File(tmp.getRoot(), "polling.log");
+
+        target.close(file, log(target, file, "log"));
+
+        for (int i = 0; i < 100 && !file.exists(); i++) {
+            Thread.sleep(50);
+        }
+        assertThat(Util.loadFile(file), is("log"));
+    }
+
+    @Test
+    public void testClose_FlushesWhenFull() throws Exception {
+        GitBucketPollingLogWriter target = new GitBucketPollingLogWriter(executor, 60 * 1000, 4);
+        File file1 = new File(tmp.getRoot(), "polling1.log");
+        File file2 = new File(tmp.getRoot(), "polling2.log");
+
+        target.close(file1, log(target, file1, "abc"));
+        assertThat(file1.exists(), is(false));
+
+        target.close(file2, log(target, file2, "def"));
+        assertThat(Util.loadFile(file1), is("abc"));
+        assertThat(Util.loadFile(file2), is("def"));
+    }
+
+    @Test
+    public void testIsRunning() throws Exception {
+        GitBucketPollingLogWriter target = new GitBucketPollingLogWriter(executor, 60 * 1000, 1024);
+        File file = new File(tmp.getRoot(), "polling.log");
+
+        ByteBuffer buffer = log(target, file, "running");
+        assertThat(target.isRunning(file), is(true));
+        assertThat(target.getBuffer(file), is(buffer));
+
+        target.close(file, buffer);
+        assertThat(target.isRunning(file), is(false));
+    }
+
+    private static ByteBuffer log(GitBucketPollingLogWriter target, File file, String text) throws Exception {
+        ByteBuffer buffer = target.open(file);
+        buffer.write(text.getBytes("UTF-8"));
+        return buffer;
+    }
+}
@@ -0,0 +1,102 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2016, Seiji Sogabe
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.jenkinsci.plugins.gitbucket;
+
+import java.io.File;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import static org.hamcrest.CoreMatchers.*;
+import static org.junit.Assert.assertThat;
+
+/**
+ * Test for {@link GitBucketProcessedHeads} class.
+ */
+public class GitBucketProcessedHeadsTest {
+
+    private static final String HEAD = "6dcb09b5b57875f334f61aebed695e2e4193db5e";
+
+    @Rule
+    public TemporaryFolder tmp = new TemporaryFolder();
+
+    @Test
+    public void testIsProcessed() throws Exception {
+        GitBucketProcessedHeads target = GitBucketProcessedHeads.load(tmp.getRoot());
+        target.put("refs/heads/master", HEAD);
+
+        assertThat(target.isProcessed("refs/heads/master", HEAD), is(true));
+        assertThat(target.isProcessed("refs/heads/feature", HEAD), is(false));
+        assertThat(target.isProcessed("refs/heads/master", null), is(false));
+    }
+
+    @Test
+    public void testLoad() throws Exception {
+        GitBucketProcessedHeads.load(tmp.getRoot()).put("refs/heads/master", HEAD);
+
+        assertThat(new File(tmp.getRoot(), GitBucketProcessedHeads.FILE_NAME).exists(), is(true));
+
+        GitBucketProcessedHeads target = GitBucketProcessedHeads.load(tmp.getRoot());
+        assertThat(target.isProcessed("refs/heads/master", HEAD), is(true));
+    }
+
+    @Test
+    public void testLoad_NoFile() throws Exception {
+        GitBucketProcessedHeads target = GitBucketProcessedHeads.load(tmp.getRoot());
+
+        assertThat(target.isProcessed("refs/heads/master", HEAD), is(false));
+    }
+
+    @Test
+    public void testPut_EvictLeastRecentlyUsed() throws Exception {
+        GitBucketProcessedHeads target = GitBucketProcessedHeads.load(tmp.getRoot());
+        target.put("refs/heads/master", HEAD);
+        for (int i = 1; i < GitBucketProcessedHeads.MAX_REFS; i++) {
+            target.put("refs/heads/branch" + i, HEAD);
+        }
+        // master is used again, so branch1 is the least recently used
+        assertThat(target.isProcessed("refs/heads/master", HEAD), is(true));
+
+        target.put("refs/heads/new", HEAD);
+
+        assertThat(target.isProcessed("refs/heads/master", HEAD), is(true));
+        assertThat(target.isProcessed("refs/heads/branch1", HEAD), is(false));
+        assertThat(target.isProcessed("refs/heads/branch2", HEAD), is(true));
+    }
+
+    @Test
+    public void testLoad_KeepAccessOrder() throws Exception {
+        GitBucketProcessedHeads saved = GitBucketProcessedHeads.load(tmp.getRoot());
+        saved.put("refs/heads/master", HEAD);
+        for (int i = 1; i < GitBucketProcessedHeads.MAX_REFS; i++) {
+            saved.put("refs/heads/branch" + i, HEAD);
+        }
+
+        GitBucketProcessedHeads target = GitBucketProcessedHeads.load(tmp.getRoot());
+        target.isProcessed("refs/heads/master", HEAD);
+        target.put("refs/heads/new", HEAD);
+
+        assertThat(target.isProcessed("refs/heads/master", HEAD), is(true));
+        assertThat(target.isProcessed("refs/heads/branch1", HEAD), is(false));
+    }
+}
@@ -0,0 +1,128 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2016, Seiji Sogabe
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.jenkinsci.plugins.gitbucket;
+
+import hudson.EnvVars;
+import java.io.InputStream;
+import java.util.Arrays;
+import net.sf.json.JSONArray;
+import net.sf.json.JSONObject;
+import org.apache.commons.io.IOUtils;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import static org.hamcrest.CoreMatchers.*;
+import static org.junit.Assert.assertThat;
+
+/**
+ * Test for {@link GitBucketPushAction} class.
+ */
+public class GitBucketPushActionTest {
+
+    private static JSONObject json;
+
+    @BeforeClass
+    public static void setUpClass() throws Exception {
+        InputStream is = null;
+        try {
+            is = GitBucketPushActionTest.class.getClassLoader().getResourceAsStream("org/jenkinsci/plugins/gitbucket/WebHookPayload.json");
+            json = JSONObject.fromObject(IOUtils.toString(is, "UTF-8"));
+        } finally {
+            IOUtils.closeQuietly(is);
+        }
+    }
+
+    @Test
+    public void testBuildEnvVars() {
+        JSONObject payload = JSONObject.fromObject(json);
+        payload.put("before", "0000000000000000000000000000000000000000");
+        GitBucketPushAction target = new GitBucketPushAction(GitBucketPushRequest.create(payload));
+
+        EnvVars env = new EnvVars();
+        target.buildEnvVars(env);
+
+        assertThat(env.get("GITBUCKET_REF"), is("refs/heads/master"));
+        assertThat(env.get("GITBUCKET_BRANCH"), is("master"));
+        assertThat(env.get("GITBUCKET_BEFORE"), is("0000000000000000000000000000000000000000"));
+        assertThat(env.get("GITBUCKET_AFTER"), is("9bffdb326046a8dae96c49f0e75f3d9dd8fd8d0c"));
+        assertThat(env.get("GITBUCKET_PUSHER"), is("sogabe"));
+        assertThat(env.get("GITBUCKET_REPOSITORY"), is("sogabe/SimpleFtp"));
+        assertThat(env.get("GITBUCKET_CHANGED_FILES_COUNT"), is("3"));
+        assertThat(env.containsKey("GITBUCKET_CHANGED_FILES"), is(false));
+    }
+
+    @Test
+    public void testGetChangedFiles() {
+        GitBucketPushAction target = new GitBucketPushAction(GitBucketPushRequest.create(json));
+
+        assertThat(target.getChangedFiles().size(), is(3));
+        assertThat(target.getChangedFiles().get(0), is(".gitignore"));
+        assertThat(target.getChangedFiles().get(2), is("src"));
+    }
+
+    @Test
+    public void testMerge() {
+        JSONObject older = JSONObject.fromObject(json);
+        older.put("before", "1111111111111111111111111111111111111111");
+        JSONObject newer = JSONObject.fromObject(json);
+        newer.put("after", "2222222222222222222222222222222222222222");
+        newer.getJSONArray("commits").getJSONObject(0).put("added", JSONArray.fromObject("[\"README\"]"));
+
+        GitBucketPushAction target = GitBucketPushAction.merge(
+                new GitBucketPushAction(GitBucketPushRequest.create(older)),
+                new GitBucketPushAction(GitBucketPushRequest.create(newer)));
+
+        assertThat(target.getBefore(), is("1111111111111111111111111111111111111111"));
+        assertThat(target.getAfter(), is("2222222222222222222222222222222222222222"));
+        assertThat(target.getChangedFiles().size(), is(4));
+    }
+
+    @Test
+    public void testMerge_OtherRef() {
+        JSONObject older = JSONObject.fromObject(json);
+        older.put("ref", "refs/heads/feature");
+        GitBucketPushAction newer = new GitBucketPushAction(GitBucketPushRequest.create(json));
+
+        assertThat(GitBucketPushAction.merge(new GitBucketPushAction(GitBucketPushRequest.create(older)), newer),
+                is(newer));
+        assertThat(GitBucketPushAction.merge(null, newer), is(newer));
+    }
+
+    @Test
+    public void testOf() {
+        JSONObject first = JSONObject.fromObject(json);
+        first.put("before", "1111111111111111111111111111111111111111");
+        JSONObject second = JSONObject.fromObject(json);
+        second.put("before", "9bffdb326046a8dae96c49f0e75f3d9dd8fd8d0c");
+        second.put("after", "2222222222222222222222222222222222222222");
+        second.getJSONArray("commits").getJSONObject(0).put("added", JSONArray.fromObject("[\"README\"]"));
+
+        GitBucketPushAction target = GitBucketPushAction.of(Arrays.asList(
+                GitBucketPushRequest.create(first), GitBucketPushRequest.create(second)));
+
+        assertThat(target.getBefore(), is("1111111111111111111111111111111111111111"));
+        assertThat(target.getAfter(), is("2222222222222222222222222222222222222222"));
+        assertThat(target.getChangedFiles().size(), is(4));
+        assertThat(target.getChangedFiles().get(3), is("README"));
+    }
+}
@@ -0,0 +1,91 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2016, Seiji Sogabe
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.jenkinsci.plugins.gitbucket;
+
+import org.junit.Before;
+import org.junit.Test;
+import static org.hamcrest.CoreMatchers.*;
+import static org.junit.Assert.assertThat;
+
+/**
+ * Test for {@link GitBucketPushFrequency} class.
+ */
+public class GitBucketPushFrequencyTest {
+
+    private GitBucketPushFrequency target;
+
+    @Before
+    public void setUp() {
+        target = new GitBucketPushFrequency();
+    }
+
+    @Test
+    public void testGetQuietPeriod_FirstPush() {
+        target.record(0);
+
+        assertThat(target.getQuietPeriod(120), is(0));
+    }
+
+    @Test
+    public void testGetQuietPeriod_Burst() {
+        long now = 0;
+        for (int i = 0; i < 10; i++) {
+            target.record(now);
+            now += 10 * 1000;
+        }
+
+        assertThat(target.getQuietPeriod(120), is(15));
+    }
+
+    @Test
+    public void testGetQuietPeriod_Cap() {
+        target.record(0);
+        target.record(100 * 1000);
+
+        assertThat(target.getQuietPeriod(120), is(120));
+    }
+
+    @Test
+    public void testGetQuietPeriod_Rare() {
+        target.record(0);
+        target.record(60 * 60 * 1000);
+
+        assertThat(target.getQuietPeriod(120), is(0));
+    }
+
+    @Test
+    public void testGetQuietPeriod_BurstAfterRare() {
+        target.record(0);
+        target.record(60 * 60 * 1000);
+        long now = 60 * 60 * 1000;
+        for (int i = 0; i < 30; i++) {
+            now += 5 * 1000;
+            target.record(now);
+        }
+
+        int actual = target.getQuietPeriod(120);
+        assertThat(actual > 0, is(true));
+        assertThat(actual <= 10, is(true));
+    }
+}
@@ -0,0 +1,59 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2016, Seiji Sogabe
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.jenkinsci.plugins.gitbucket;
+
+import org.junit.Test;
+import static org.hamcrest.CoreMatchers.*;
+import static org.junit.Assert.assertThat;
+
+/**
+ * Test for {@link GitBucketPushTimings} class.
+ */
+public class GitBucketPushTimingsTest {
+
+    @Test
+    public void testGetDurations() {
+        GitBucketPushTimings timings = new GitBucketPushTimings(1000L, 1100L, 1300L, 1600L, 5);
+
+        long[] actual = timings.getDurations(7000L);
+
+        assertThat(actual.length, is(GitBucketPushTimings.STAGES.length));
+        assertThat(actual[0], is(100L));
+        assertThat(actual[1], is(200L));
+        assertThat(actual[2], is(300L));
+        assertThat(actual[3], is(5000L));
+        assertThat(actual[4], is(400L));
+        assertThat(actual[5], is(6000L));
+    }
+
+    @Test
+    public void testGetDurations_StartedWithinQuietPeriod() {
+        GitBucketPushTimings timings = new GitBucketPushTimings(1000L, 1000L, 1000L, 1000L, 5);
+
+        long[] actual = timings.getDurations(3000L);
+
+        assertThat(actual[3], is(2000L));
+        assertThat(actual[4], is(0L));
+    }
+}
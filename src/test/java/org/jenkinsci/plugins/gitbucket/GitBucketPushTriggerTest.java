@@ -0,0 +1,600 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2016, Seiji Sogabe
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.jenkinsci.plugins.gitbucket;
+
+import hudson.matrix.MatrixBuild;
+import hudson.matrix.MatrixProject;
+import hudson.model.AbstractProject;
+import hudson.model.Cause;
+import hudson.model.CauseAction;
+import hudson.model.FreeStyleBuild;
+import hudson.model.FreeStyleProject;
+import hudson.model.Queue;
+import hudson.model.Result;
+import hudson.model.Run;
+import hudson.model.TaskListener;
+import hudson.model.queue.QueueTaskFuture;
+import hudson.util.FormValidation;
+import java.io.File;
+import java.io.IOException;
+import java.net.ConnectException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import jenkins.model.CauseOfInterruption;
+import jenkins.model.InterruptedBuildAction;
+import org.jenkinsci.plugins.gitbucket.GitBucketPushTrigger.GitBucketPushCause;
+import org.jenkinsci.plugins.gitbucket.GitBucketPushTrigger.GitBucketPushTriggerDescriptor;
+import org.jenkinsci.plugins.gitbucket.GitBucketPushTrigger.SupersededByPush;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.jvnet.hudson.test.JenkinsRule;
+import org.jvnet.hudson.test.SleepBuilder;
+import static org.hamcrest.CoreMatchers.*;
+import static org.junit.Assert.assertThat;
+
+/**
+ * Test for {@link GitBucketPushTrigger} class.
+ */
+public class GitBucketPushTriggerTest {
+
+    @Rule
+    public TemporaryFolder tmp = new TemporaryFolder();
+
+    @Rule
+    public JenkinsRule j = new JenkinsRule();
+
+    @Test
+    public void testMatches() {
+        String patterns = "master, release/* refs/tags/v*";
+
+        assertThat(GitBucketPushTriggerDescriptor.matches(patterns, "refs/heads/master"), is(true));
+        assertThat(GitBucketPushTriggerDescriptor.matches(patterns, "refs/heads/release/1.0"), is(true));
+        assertThat(GitBucketPushTriggerDescriptor.matches(patterns, "refs/tags/v1.0"), is(true));
+        assertThat(GitBucketPushTriggerDescriptor.matches(patterns, "refs/heads/feature"), is(false));
+        assertThat(GitBucketPushTriggerDescriptor.matches(patterns, "refs/heads/master2"), is(false));
+    }
+
+    @Test
+    public void testParseWeights() {
+        Map<String, Integer> actual = GitBucketPushTriggerDescriptor.parseWeights("owner/a=3\n\n owner/b = 2 \n");
+
+        assertThat(actual.size(), is(2));
+        assertThat(actual.get("owner/a"), is(3));
+        assertThat(actual.get("owner/b"), is(2));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testParseWeights_Invalid() {
+        GitBucketPushTriggerDescriptor.parseWeights("owner/a=x");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testParseWeights_NotPositive() {
+        GitBucketPushTriggerDescriptor.parseWeights("owner/a=0");
+    }
+
+    @Test
+    public void testMatches_Null() {
+        assertThat(GitBucketPushTriggerDescriptor.matches(null, "refs/heads/master"), is(false));
+        assertThat(GitBucketPushTriggerDescriptor.matches("master", null), is(false));
+    }
+
+    @Test
+    public void testGetPollingLogFile() {
+        File actual = GitBucketPushTrigger.getPollingLogFile(tmp.getRoot(), "1234");
+
+        assertThat(actual, is(new File(new File(tmp.getRoot(), "gitbucket-polling"), "1234.log")));
+    }
+
+    @Test
+    public void testPruneArchivedLogs() throws Exception {
+        File[] files = new File[5];
+        for (int i = 0; i < files.length; i++) {
+            files[i] = tmp.newFile(i + ".log");
+            files[i].setLastModified(1000000L * (i + 1));
+        }
+
+        GitBucketPushTrigger.pruneArchivedLogs(tmp.getRoot(), 3, Collections.<String>emptySet());
+
+        assertThat(files[0].exists(), is(false));
+        assertThat(files[1].exists(), is(false));
+        assertThat(files[2].exists(), is(true));
+        assertThat(files[4].exists(), is(true));
+    }
+
+    @Test
+    public void testPruneArchivedLogs_Queued() throws Exception {
+        File[] files = new File[5];
+        for (int i = 0; i < files.length; i++) {
+            files[i] = tmp.newFile(i + ".log");
+            files[i].setLastModified(1000000L * (i + 1));
+        }
+
+        // the log of a build waiting in the queue is kept
+        GitBucketPushTrigger.pruneArchivedLogs(tmp.getRoot(), 3, Collections.singleton("0"));
+
+        assertThat(files[0].exists(), is(true));
+        assertThat(files[1].exists(), is(false));
+        assertThat(files[2].exists(), is(false));
+        assertThat(files[3].exists(), is(true));
+        assertThat(files[4].exists(), is(true));
+    }
+
+    @Test
+    public void testGetRetryDelay() {
+        Random random = new Random(0);
+
+        for (int i = 0; i < 10; i++) {
+            long first = GitBucketPushTrigger.getRetryDelay(0, 1000L, 60000L, random);
+            long third = GitBucketPushTrigger.getRetryDelay(2, 1000L, 60000L, random);
+            assertThat(first >= 500L && first <= 1000L, is(true));
+            assertThat(third >= 2000L && third <= 4000L, is(true));
+        }
+    }
+
+    @Test
+    public void testGetRetryDelay_Max() {
+        long actual = GitBucketPushTrigger.getRetryDelay(100, 1000L, 60000L, new Random(0));
+
+        assertThat(actual >= 30000L && actual <= 60000L, is(true));
+    }
+
+    @Test
+    public void testCancelSupersededItems() throws Exception {
+        FreeStyleProject p = j.createFreeStyleProject();
+        GitBucketPushTrigger trigger = createTrigger(p);
+        GitBucketPushCause older = new GitBucketPushCause("sogabe", "refs/heads/master", "sha1", "delivery-1");
+        p.scheduleBuild2(600, new CauseAction(older), new GitBucketPushAction(
+                createPushRequest("refs/heads/master", "sha0", "sha1", "README")));
+
+        List<Queue.Item> actual = trigger.cancelSupersededItems("refs/heads/master");
+
+        assertThat(actual.size(), is(1));
+        assertThat(actual.get(0).getCauses().contains(older), is(true));
+        assertThat(j.jenkins.getQueue().getItem(p), nullValue());
+
+        // the pushes of the cancelled build are carried over
+        GitBucketPushAction merged = GitBucketPushAction.merge(actual.get(0).getAction(GitBucketPushAction.class),
+                new GitBucketPushAction(createPushRequest("refs/heads/master", "sha1", "sha2", "pom.xml")));
+        assertThat(merged.getBefore(), is("sha0"));
+        assertThat(merged.getAfter(), is("sha2"));
+        assertThat(merged.getChangedFiles(), is(Arrays.asList("README", "pom.xml")));
+    }
+
+    @Test
+    public void testCancelSupersededItems_OtherRef() throws Exception {
+        FreeStyleProject p = j.createFreeStyleProject();
+        GitBucketPushTrigger trigger = createTrigger(p);
+        p.scheduleBuild2(600, new CauseAction(
+                new GitBucketPushCause("sogabe", "refs/heads/feature", "sha1", "delivery-1")));
+
+        List<Queue.Item> actual = trigger.cancelSupersededItems("refs/heads/master");
+
+        assertThat(actual.isEmpty(), is(true));
+        Queue.Item item = j.jenkins.getQueue().getItem(p);
+        assertThat(item, notNullValue());
+        j.jenkins.getQueue().cancel(item);
+    }
+
+    @Test
+    public void testAbortSupersededBuilds() throws Exception {
+        FreeStyleProject p = j.createFreeStyleProject();
+        p.getBuildersList().add(new SleepBuilder(60 * 1000));
+        GitBucketPushTrigger trigger = createTrigger(p);
+        QueueTaskFuture<FreeStyleBuild> future = p.scheduleBuild2(0, new CauseAction(
+                new GitBucketPushCause("sogabe", "refs/heads/master", "sha1", "delivery-1")));
+        FreeStyleBuild build = future.waitForStart();
+
+        trigger.abortSupersededBuilds("refs/heads/master", "sha2");
+
+        j.assertBuildStatus(Result.ABORTED, future.get());
+        assertThat(isSuperseded(build), is(true));
+    }
+
+    @Test
+    public void testAbortSupersededBuilds_OtherRef() throws Exception {
+        FreeStyleProject p = j.createFreeStyleProject();
+        p.getBuildersList().add(new SleepBuilder(60 * 1000));
+        GitBucketPushTrigger trigger = createTrigger(p);
+        QueueTaskFuture<FreeStyleBuild> future = p.scheduleBuild2(0, new CauseAction(
+                new GitBucketPushCause("sogabe", "refs/heads/feature", "sha1", "delivery-1")));
+        FreeStyleBuild build = future.waitForStart();
+
+        trigger.abortSupersededBuilds("refs/heads/master", "sha2");
+
+        assertThat(build.isBuilding(), is(true));
+        build.getExecutor().interrupt();
+        future.get();
+        assertThat(isSuperseded(build), is(false));
+    }
+
+    @Test
+    public void testAbortSupersededBuilds_SameCommit() throws Exception {
+        FreeStyleProject p = j.createFreeStyleProject();
+        p.getBuildersList().add(new SleepBuilder(60 * 1000));
+        GitBucketPushTrigger trigger = createTrigger(p);
+        QueueTaskFuture<FreeStyleBuild> future = p.scheduleBuild2(0, new CauseAction(
+                new GitBucketPushCause("sogabe", "refs/heads/master", "sha1", "delivery-1")));
+        FreeStyleBuild build = future.waitForStart();
+
+        trigger.abortSupersededBuilds("refs/heads/master", "sha1");
+
+        assertThat(build.isBuilding(), is(true));
+        build.getExecutor().interrupt();
+        future.get();
+        assertThat(isSuperseded(build), is(false));
+    }
+
+    @Test
+    public void testAbortSupersededBuilds_OneOffExecutor() throws Exception {
+        // the parent build of a matrix project runs on a one-off executor
+        MatrixProject p = j.jenkins.createProject(MatrixProject.class, "matrix");
+        p.getBuildersList().add(new SleepBuilder(60 * 1000));
+        GitBucketPushTrigger trigger = createTrigger(p);
+        QueueTaskFuture<MatrixBuild> future = p.scheduleBuild2(0, new CauseAction(
+                new GitBucketPushCause("sogabe", "refs/heads/master", "sha1", "delivery-1")));
+        MatrixBuild build = future.waitForStart();
+
+        trigger.abortSupersededBuilds("refs/heads/master", "sha2");
+
+        j.assertBuildStatus(Result.ABORTED, future.get());
+        assertThat(isSuperseded(build), is(true));
+    }
+
+    @Test
+    public void testOnPost_BatchWindow() throws Exception {
+        RecordingTrigger trigger = new RecordingTrigger();
+        trigger.setBatchWindow(1);
+        trigger.start(j.createFreeStyleProject(), true);
+        GitBucketPushRequest first = createPushRequest("refs/heads/master", "sha0", "sha1", "README");
+        GitBucketPushRequest second = createPushRequest("refs/heads/master", "sha1", "sha2", "pom.xml");
+        GitBucketPushRequest other = createPushRequest("refs/heads/feature", "sha0", "sha3", "src");
+
+        trigger.onPost(first);
+        trigger.onPost(second);
+        trigger.onPost(other);
+
+        assertThat(trigger.executed.isEmpty(), is(true));
+        trigger.await(2, 10);
+        assertThat(trigger.executed.size(), is(2));
+        assertThat(trigger.get("refs/heads/master"), is(Arrays.asList(first, second)));
+        assertThat(trigger.get("refs/heads/feature"), is(Arrays.asList(other)));
+    }
+
+    @Test
+    public void testOnPost_BatchSize() throws Exception {
+        RecordingTrigger trigger = new RecordingTrigger();
+        trigger.setBatchWindow(600);
+        trigger.setBatchSize(2);
+        trigger.start(j.createFreeStyleProject(), true);
+        GitBucketPushRequest first = createPushRequest("refs/heads/master", "sha0", "sha1", "README");
+        GitBucketPushRequest second = createPushRequest("refs/heads/master", "sha1", "sha2", "pom.xml");
+        GitBucketPushRequest third = createPushRequest("refs/heads/master", "sha2", "sha3", "src");
+
+        trigger.onPost(first);
+        trigger.onPost(second);
+        trigger.onPost(third);
+
+        // the full batch is flushed at once, and the third push starts a new batch
+        assertThat(trigger.executed.size(), is(1));
+        assertThat(trigger.executed.get(0), is(Arrays.asList(first, second)));
+    }
+
+    @Test
+    public void testOnPost_NoBatch() throws Exception {
+        RecordingTrigger trigger = new RecordingTrigger();
+        trigger.start(j.createFreeStyleProject(), true);
+        GitBucketPushRequest first = createPushRequest("refs/heads/master", "sha0", "sha1", "README");
+
+        trigger.onPost(first);
+
+        assertThat(trigger.executed.size(), is(1));
+        assertThat(trigger.executed.get(0), is(Collections.singletonList(first)));
+    }
+
+    @Test
+    public void testDoCheckPollingSpec() {
+        GitBucketPushTriggerDescriptor descriptor
+                = j.jenkins.getDescriptorByType(GitBucketPushTriggerDescriptor.class);
+
+        assertThat(descriptor.doCheckPollingSpec("H/15 * * * *").kind, is(FormValidation.Kind.OK));
+        assertThat(descriptor.doCheckPollingSpec("").kind, is(FormValidation.Kind.OK));
+        assertThat(descriptor.doCheckPollingSpec("every minute").kind, is(FormValidation.Kind.ERROR));
+    }
+
+    @Test
+    public void testIsTransportFailure() {
+        assertThat(GitBucketPushTrigger.isTransportFailure(new ConnectException("Connection refused")), is(true));
+        assertThat(GitBucketPushTrigger.isTransportFailure(new RuntimeException("Command returned status code 128:"
+                + " fatal: unable to access 'http://localhost/': Could not resolve host: localhost")), is(true));
+        assertThat(GitBucketPushTrigger.isTransportFailure(new IOException("Failed to fetch",
+                new ConnectException("Connection timed out"))), is(true));
+        assertThat(GitBucketPushTrigger.isTransportFailure(new RuntimeException("Authentication failed")), is(false));
+        assertThat(GitBucketPushTrigger.isTransportFailure(new RuntimeException("Couldn't find remote ref feature")),
+                is(false));
+    }
+
+    @Test
+    public void testExecute_JobFailureDoesNotOpenCircuit() throws Exception {
+        GitBucketPushTriggerDescriptor descriptor
+                = j.jenkins.getDescriptorByType(GitBucketPushTriggerDescriptor.class);
+        descriptor.setMaxPollRetries(0);
+        FailingTrigger credentials = new FailingTrigger("Authentication failed for http://localhost/git/owner/a.git");
+        credentials.start(j.createFreeStyleProject("bad-credentials"), true);
+        FailingTrigger unreachable = new FailingTrigger("Connection refused");
+        unreachable.start(j.createFreeStyleProject("unreachable"), true);
+
+        // both jobs are on the same host, and the bad credentials of the one fail more than the threshold
+        for (int i = 0; i < 10; i++) {
+            credentials.onPost(createPushRequest("http://localhost/git/owner/a.git", "sha" + i));
+        }
+        awaitDeadLetters("bad-credentials", 10);
+
+        assertThat(descriptor.breaker.isOpen("localhost"), is(false));
+
+        for (int i = 0; i < 5; i++) {
+            unreachable.onPost(createPushRequest("http://localhost/git/owner/b.git", "sha" + i));
+        }
+        awaitDeadLetters("unreachable", 5);
+
+        assertThat(descriptor.breaker.isOpen("localhost"), is(true));
+    }
+
+    @Test
+    public void testExecute_ProbeFailedByJob() throws Exception {
+        GitBucketPushTriggerDescriptor descriptor
+                = j.jenkins.getDescriptorByType(GitBucketPushTriggerDescriptor.class);
+        descriptor.setMaxPollRetries(0);
+        // open, and already waited long enough for a probe
+        long openedAt = System.currentTimeMillis() - TimeUnit.HOURS.toMillis(1);
+        for (int i = 0; i < 10; i++) {
+            descriptor.breaker.record("localhost", false, openedAt);
+        }
+        FailingTrigger trigger = new FailingTrigger("Authentication failed for http://localhost/git/owner/a.git");
+        trigger.start(j.createFreeStyleProject("failed-probe"), true);
+
+        trigger.onPost(createPushRequest("http://localhost/git/owner/a.git", "sha1"));
+        awaitDeadLetters("failed-probe", 1);
+        trigger.onPost(createPushRequest("http://localhost/git/owner/a.git", "sha2"));
+
+        // the failed probe does not keep the host closed to the next push
+        awaitDeadLetters("failed-probe", 2);
+    }
+
+    @Test
+    public void testExecute_DeferWhileCircuitOpen() throws Exception {
+        GitBucketPushTriggerDescriptor descriptor
+                = j.jenkins.getDescriptorByType(GitBucketPushTriggerDescriptor.class);
+        descriptor.setMaxPollRetries(0);
+        for (int i = 0; i < 10; i++) {
+            descriptor.breaker.record("localhost", false, System.currentTimeMillis());
+        }
+        FailingTrigger trigger = new FailingTrigger("Connection refused");
+        trigger.start(j.createFreeStyleProject("deferred"), true);
+
+        trigger.onPost(createPushRequest("http://localhost/git/owner/a.git", "sha1"));
+        Thread.sleep(2000);
+
+        // deferring is not a retry, so the push is not given up without polling
+        for (GitBucketDeadLetters.Entry entry : GitBucketDeadLetters.get().getEntries()) {
+            assertThat(entry.getJobName(), not("deferred"));
+        }
+    }
+
+    @Test
+    public void testExecute_DropSupersededRetry() throws Exception {
+        GitBucketPushTriggerDescriptor descriptor
+                = j.jenkins.getDescriptorByType(GitBucketPushTriggerDescriptor.class);
+        descriptor.setMaxPollRetries(5);
+        String url = "http://localhost/git/owner/superseded.git";
+        RetryTrigger trigger = new RetryTrigger("sha1");
+        trigger.start(j.createFreeStyleProject(), true);
+
+        // push A fails
+        GitBucketRefHeadTable.get().update(GitBucketUtil.toRepositoryKey(url), "refs/heads/master", "sha1",
+                System.currentTimeMillis());
+        trigger.onPost(createPushRequest(url, "sha1"));
+        trigger.await(1);
+
+        // push B succeeds
+        GitBucketRefHeadTable.get().update(GitBucketUtil.toRepositoryKey(url), "refs/heads/master", "sha2",
+                System.currentTimeMillis());
+        trigger.onPost(createPushRequest(url, "sha2"));
+        trigger.await(2);
+
+        // the retry of A fires after the backoff, and is dropped
+        Thread.sleep(20 * 1000);
+        assertThat(trigger.polled, is(Arrays.asList("sha1", "sha2")));
+    }
+
+    @Test
+    public void testGetNewestPushCause() {
+        GitBucketPushCause older = new GitBucketPushCause("sogabe", "refs/heads/master", "sha1", "delivery-1");
+        GitBucketPushCause newer = new GitBucketPushCause("sogabe", "refs/heads/master", "sha2", "delivery-2");
+
+        List<Cause> causes = Arrays.<Cause>asList(older, new Cause.UserIdCause(), newer);
+
+        assertThat(GitBucketPushTrigger.getNewestPushCause(causes), is(newer));
+        assertThat(GitBucketPushTrigger.getNewestPushCause(Collections.<Cause>emptyList()), nullValue());
+    }
+
+    private static boolean isSuperseded(Run<?, ?> build) {
+        InterruptedBuildAction action = build.getAction(InterruptedBuildAction.class);
+        if (action == null) {
+            return false;
+        }
+        for (CauseOfInterruption cause : action.getCauses()) {
+            if (cause instanceof SupersededByPush) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static GitBucketPushRequest createPushRequest(String ref, String before, String after,
+            String added) {
+        GitBucketPushRequest req = new GitBucketPushRequest();
+        req.setRef(ref);
+        req.setBefore(before);
+        req.setAfter(after);
+        GitBucketPushRequest.Commit commit = new GitBucketPushRequest.Commit();
+        commit.setId(after);
+        commit.setAdded(Collections.singletonList(added));
+        req.setCommits(Collections.singletonList(commit));
+        return req;
+    }
+
+    private static GitBucketPushRequest createPushRequest(String cloneUrl, String after) {
+        GitBucketPushRequest req = createPushRequest("refs/heads/master", "sha", after, "README");
+        GitBucketPushRequest.Repository repository = new GitBucketPushRequest.Repository();
+        repository.setCloneUrl(cloneUrl);
+        req.setRepository(repository);
+        return req;
+    }
+
+    private static void awaitDeadLetters(String jobName, int size) throws InterruptedException {
+        long end = System.currentTimeMillis() + 30 * 1000L;
+        while (System.currentTimeMillis() < end) {
+            int count = 0;
+            for (GitBucketDeadLetters.Entry entry : GitBucketDeadLetters.get().getEntries()) {
+                if (jobName.equals(entry.getJobName())) {
+                    count++;
+                }
+            }
+            if (count >= size) {
+                return;
+            }
+            Thread.sleep(100);
+        }
+        throw new AssertionError("Pushes to " + jobName + " did not fail in time");
+    }
+
+    private GitBucketPushTrigger createTrigger(AbstractProject<?, ?> p) throws Exception {
+        GitBucketPushTrigger trigger = new GitBucketPushTrigger(true);
+        p.addTrigger(trigger);
+        trigger.start(p, true);
+        return trigger;
+    }
+
+    /**
+     * Records the pushes to poll instead of polling.
+     */
+    private static class RecordingTrigger extends GitBucketPushTrigger {
+
+        private final List<List<GitBucketPushRequest>> executed
+                = new CopyOnWriteArrayList<List<GitBucketPushRequest>>();
+
+        RecordingTrigger() {
+            super(false);
+        }
+
+        @Override
+        void execute(List<GitBucketPushRequest> requests) {
+            executed.add(requests);
+        }
+
+        List<GitBucketPushRequest> get(String ref) {
+            for (List<GitBucketPushRequest> requests : executed) {
+                if (ref.equals(requests.get(0).getRef())) {
+                    return requests;
+                }
+            }
+            return null;
+        }
+
+        void await(int size, int seconds) throws InterruptedException {
+            long end = System.currentTimeMillis() + seconds * 1000L;
+            while (executed.size() < size && System.currentTimeMillis() < end) {
+                Thread.sleep(100);
+            }
+        }
+    }
+
+    /**
+     * Fails every polling with the error.
+     */
+    private class FailingTrigger extends GitBucketPushTrigger {
+
+        private final String error;
+
+        FailingTrigger(String error) {
+            super(false);
+            this.error = error;
+        }
+
+        @Override
+        boolean poll(GitBucketPushRequest req, TaskListener listener) {
+            listener.fatalError(error);
+            return false;
+        }
+
+        @Override
+        public GitBucketPushTriggerDescriptor getDescriptor() {
+            return j.jenkins.getDescriptorByType(GitBucketPushTriggerDescriptor.class);
+        }
+    }
+
+    /**
+     * Fails the first polling of the head, and records the polled heads.
+     */
+    private class RetryTrigger extends GitBucketPushTrigger {
+
+        private final List<String> polled = new CopyOnWriteArrayList<String>();
+
+        private final String failingHead;
+
+        RetryTrigger(String failingHead) {
+            super(false);
+            this.failingHead = failingHead;
+        }
+
+        @Override
+        boolean poll(GitBucketPushRequest req, TaskListener listener) {
+            String head = req.getLastCommit().getId();
+            polled.add(head);
+            if (head.equals(failingHead) && polled.indexOf(head) == polled.size() - 1) {
+                listener.fatalError("Polling failed");
+            }
+            return false;
+        }
+
+        @Override
+        public GitBucketPushTriggerDescriptor getDescriptor() {
+            return j.jenkins.getDescriptorByType(GitBucketPushTriggerDescriptor.class);
+        }
+
+        void await(int size) throws InterruptedException {
+            long end = System.currentTimeMillis() + 10 * 1000L;
+            while (polled.size() < size && System.currentTimeMillis() < end) {
+                Thread.sleep(100);
+            }
+        }
+    }
+}
@@ -0,0 +1,83 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2016, Seiji Sogabe
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.jenkinsci.plugins.gitbucket;
+
+import hudson.plugins.git.BranchSpec;
+import hudson.plugins.git.UserRemoteConfig;
+import java.util.Arrays;
+import java.util.List;
+import org.junit.Test;
+import static org.hamcrest.CoreMatchers.*;
+import static org.junit.Assert.assertThat;
+
+/**
+ * Test for {@link GitBucketPushedRefFetch} class.
+ */
+public class GitBucketPushedRefFetchTest {
+
+    private static final String URL = "http://localhost/gitbucket/git/owner/repo.git";
+
+    @Test
+    public void testToRefSpec() {
+        UserRemoteConfig remote = new UserRemoteConfig(URL, "upstream", null, null);
+
+        assertThat(GitBucketPushedRefFetch.toRefSpec(remote, "refs/heads/feature/a").toString(),
+                is("+refs/heads/feature/a:refs/remotes/upstream/feature/a"));
+    }
+
+    @Test
+    public void testToRefSpec_DefaultRemote() {
+        UserRemoteConfig remote = new UserRemoteConfig(URL, null, null, null);
+
+        assertThat(GitBucketPushedRefFetch.toRefSpec(remote, "refs/heads/master").toString(),
+                is("+refs/heads/master:refs/remotes/origin/master"));
+    }
+
+    @Test
+    public void testToRefSpec_NotBranch() {
+        UserRemoteConfig remote = new UserRemoteConfig(URL, null, null, null);
+
+        assertThat(GitBucketPushedRefFetch.toRefSpec(remote, "refs/tags/v1.0"), is(nullValue()));
+        assertThat(GitBucketPushedRefFetch.toRefSpec(remote, null), is(nullValue()));
+    }
+
+    @Test
+    public void testIsBuilt() {
+        UserRemoteConfig remote = new UserRemoteConfig(URL, null, null, null);
+        List<BranchSpec> branches = Arrays.asList(new BranchSpec("*/master"), new BranchSpec("*/release/*"));
+
+        assertThat(GitBucketPushedRefFetch.isBuilt(remote, branches, "refs/heads/master"), is(true));
+        assertThat(GitBucketPushedRefFetch.isBuilt(remote, branches, "refs/heads/release/1.0"), is(true));
+    }
+
+    @Test
+    public void testIsBuilt_OtherBranch() {
+        UserRemoteConfig remote = new UserRemoteConfig(URL, "upstream", null, null);
+        List<BranchSpec> branches = Arrays.asList(new BranchSpec("*/master"));
+
+        // a push to a branch the job does not build keeps the configured refspecs
+        assertThat(GitBucketPushedRefFetch.isBuilt(remote, branches, "refs/heads/feature"), is(false));
+        assertThat(GitBucketPushedRefFetch.isBuilt(remote, branches, "refs/tags/v1.0"), is(false));
+    }
+}
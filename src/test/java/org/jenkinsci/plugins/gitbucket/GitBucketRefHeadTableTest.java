@@ -0,0 +1,113 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2016, Seiji Sogabe
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.jenkinsci.plugins.gitbucket;
+
+import java.util.Map;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import static org.hamcrest.CoreMatchers.*;
+import static org.junit.Assert.assertThat;
+
+/**
+ * Test for {@link GitBucketRefHeadTable} class.
+ */
+public class GitBucketRefHeadTableTest {
+
+    private static final String KEY = "http://localhost/git/owner/repo.git";
+
+    private static final String HEAD = "4d6b4a6a8e3b3f6a3e4b8e9a9bb31d8a2b9f1c11";
+
+    @Rule
+    public TemporaryFolder tmp = new TemporaryFolder();
+
+    @Test
+    public void testGetHeads() {
+        GitBucketRefHeadTable table = GitBucketRefHeadTable.load(tmp.getRoot());
+        table.update(KEY, "refs/heads/master", HEAD, 1000L);
+
+        Map<String, String> actual = table.getHeads(KEY, 500L, 1200L);
+
+        assertThat(actual.size(), is(1));
+        assertThat(actual.get("refs/heads/master"), is(HEAD));
+    }
+
+    @Test
+    public void testGetHeads_Stale() {
+        GitBucketRefHeadTable table = GitBucketRefHeadTable.load(tmp.getRoot());
+        table.update(KEY, "refs/heads/master", HEAD, 1000L);
+
+        assertThat(table.getHeads(KEY, 500L, 2000L), nullValue());
+        assertThat(table.getHeads("http://localhost/git/owner/other.git", 500L, 1200L), nullValue());
+    }
+
+    @Test
+    public void testGetHeads_StaleRef() {
+        GitBucketRefHeadTable table = GitBucketRefHeadTable.load(tmp.getRoot());
+        table.update(KEY, "refs/heads/master", HEAD, 1000L);
+        table.update(KEY, "refs/heads/feature", HEAD, 1800L);
+
+        Map<String, String> actual = table.getHeads(KEY, 500L, 2000L);
+
+        // the push to feature does not make the head of master fresh
+        assertThat(actual.size(), is(1));
+        assertThat(actual.get("refs/heads/feature"), is(HEAD));
+        assertThat(actual.containsKey("refs/heads/master"), is(false));
+    }
+
+    @Test
+    public void testGetHead() {
+        GitBucketRefHeadTable table = GitBucketRefHeadTable.load(tmp.getRoot());
+        table.update(KEY, "refs/heads/master", HEAD, 1000L);
+
+        assertThat(table.getHead(KEY, "refs/heads/master"), is(HEAD));
+        assertThat(table.getHead(KEY, "refs/heads/feature"), nullValue());
+        assertThat(table.getHead("http://localhost/git/owner/other.git", "refs/heads/master"), nullValue());
+    }
+
+    @Test
+    public void testUpdate_Deleted() {
+        GitBucketRefHeadTable table = GitBucketRefHeadTable.load(tmp.getRoot());
+        table.update(KEY, "refs/heads/feature", HEAD, 1000L);
+        table.update(KEY, "refs/heads/feature", "0000000000000000000000000000000000000000", 1100L);
+
+        table.update(KEY, "refs/heads/master", HEAD, 1100L);
+
+        Map<String, String> actual = table.getHeads(KEY, 500L, 1200L);
+
+        assertThat(actual.size(), is(1));
+        assertThat(actual.containsKey("refs/heads/feature"), is(false));
+    }
+
+    @Test
+    public void testSave() {
+        GitBucketRefHeadTable table = GitBucketRefHeadTable.load(tmp.getRoot());
+        table.update(KEY, "refs/heads/master", HEAD, 1000L);
+        table.save();
+
+        Map<String, String> actual = GitBucketRefHeadTable.load(tmp.getRoot()).getHeads(KEY, 500L, 1200L);
+
+        assertThat(actual.get("refs/heads/master"), is(HEAD));
+    }
+}
@@ -0,0 +1,87 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2016, Seiji Sogabe
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.jenkinsci.plugins.gitbucket;
+
+import hudson.EnvVars;
+import hudson.FilePath;
+import hudson.model.TaskListener;
+import hudson.util.StreamTaskListener;
+import java.io.File;
+import org.apache.commons.io.FileUtils;
+import org.jenkinsci.plugins.gitclient.Git;
+import org.jenkinsci.plugins.gitclient.GitClient;
+import org.junit.Rule;
+import org.junit.Test;
+import org.jvnet.hudson.test.JenkinsRule;
+import static org.hamcrest.CoreMatchers.*;
+import static org.junit.Assert.assertThat;
+
+/**
+ * Test for {@link GitBucketReferenceRepositories} class.
+ */
+public class GitBucketReferenceRepositoriesTest {
+
+    @Rule
+    public JenkinsRule j = new JenkinsRule();
+
+    @Test
+    public void testPrepare() throws Exception {
+        TaskListener listener = StreamTaskListener.fromStdout();
+        File repo = j.createTmpDir();
+        GitClient git = Git.with(listener, new EnvVars()).in(repo).getClient();
+        git.init();
+        git.setAuthor("jenkins", "jenkins@example.com");
+        git.setCommitter("jenkins", "jenkins@example.com");
+        FileUtils.writeStringToFile(new File(repo, "file"), "first");
+        git.add("file");
+        git.commit("first");
+
+        String url = repo.getAbsolutePath();
+        FilePath actual = GitBucketReferenceRepositories.get().prepare(j.jenkins, url, null, listener);
+
+        assertThat(actual, is(GitBucketReferenceRepositories.getReferenceDir(j.jenkins.getRootPath(), url, null)));
+        assertThat(actual.child("HEAD").exists(), is(true));
+        assertThat(actual.child("refs/heads/master").exists(), is(true));
+        // the objects borrowed by the workspaces are never deleted
+        String config = actual.child("config").readToString();
+        assertThat(config.contains("auto = 0"), is(true));
+        assertThat(config.contains("pruneExpire = never"), is(true));
+    }
+
+    @Test
+    public void testGetReferenceDir() {
+        FilePath root = j.jenkins.getRootPath();
+        FilePath dir = GitBucketReferenceRepositories.getReferenceDir(
+                root, "http://localhost/git/owner/repo.git", "user");
+
+        // the spellings of the same repository share the reference repository
+        assertThat(GitBucketReferenceRepositories.getReferenceDir(
+                root, "http://alice@LOCALHOST/git/owner/repo/", "user"), is(dir));
+        // but the jobs using other credentials do not
+        assertThat(GitBucketReferenceRepositories.getReferenceDir(
+                root, "http://localhost/git/owner/repo.git", "other"), is(not(dir)));
+        assertThat(GitBucketReferenceRepositories.getReferenceDir(
+                root, "http://localhost/git/owner/repo.git", null), is(not(dir)));
+    }
+}
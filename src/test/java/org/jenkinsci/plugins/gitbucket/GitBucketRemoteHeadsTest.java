@@ -0,0 +1,99 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2016, Seiji Sogabe
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.jenkinsci.plugins.gitbucket;
+
+import com.cloudbees.plugins.credentials.common.StandardCredentials;
+import hudson.model.TaskListener;
+import hudson.util.StreamTaskListener;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.eclipse.jgit.lib.ObjectId;
+import org.junit.Test;
+import static org.hamcrest.CoreMatchers.*;
+import static org.junit.Assert.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Test for {@link GitBucketRemoteHeads} class.
+ */
+public class GitBucketRemoteHeadsTest {
+
+    private static final String URL = "http://localhost/gitbucket/git/owner/repo.git";
+
+    private static final ObjectId HEAD = ObjectId.fromString("6dcb09b5b57875f334f61aebed695e2e4193db5e");
+
+    private final TaskListener listener = StreamTaskListener.fromStdout();
+
+    @Test
+    public void testGetHead_SharedInDelivery() throws Exception {
+        CountingRemoteHeads target = new CountingRemoteHeads(60 * 1000);
+
+        assertThat(target.getHead(URL, "refs/heads/master", "d1", null, listener), is(HEAD));
+        assertThat(target.getHead(URL, "refs/heads/master", "d1", null, listener), is(HEAD));
+        assertThat(target.lookups.get(), is(1));
+
+        target.getHead(URL, "refs/heads/feature", "d1", null, listener);
+        target.getHead(URL, "refs/heads/master", "d2", null, listener);
+        assertThat(target.lookups.get(), is(3));
+    }
+
+    @Test
+    public void testGetHead_OtherCredentials() throws Exception {
+        CountingRemoteHeads target = new CountingRemoteHeads(60 * 1000);
+        StandardCredentials credentials = mock(StandardCredentials.class);
+        when(credentials.getId()).thenReturn("credentials");
+
+        target.getHead(URL, "refs/heads/master", "d1", null, listener);
+        target.getHead(URL, "refs/heads/master", "d1", credentials, listener);
+        target.getHead(URL, "refs/heads/master", "d1", credentials, listener);
+
+        assertThat(target.lookups.get(), is(2));
+    }
+
+    @Test
+    public void testGetHead_Expired() throws Exception {
+        CountingRemoteHeads target = new CountingRemoteHeads(0);
+
+        target.getHead(URL, "refs/heads/master", "d1", null, listener);
+        Thread.sleep(10);
+        target.getHead(URL, "refs/heads/master", "d2", null, listener);
+
+        assertThat(target.size(), is(1));
+    }
+
+    private static class CountingRemoteHeads extends GitBucketRemoteHeads {
+
+        private final AtomicInteger lookups = new AtomicInteger();
+
+        CountingRemoteHeads(long ttl) {
+            super(ttl);
+        }
+
+        @Override
+        ObjectId lookup(String url, String ref, StandardCredentials credentials, TaskListener listener) {
+            lookups.incrementAndGet();
+            return HEAD;
+        }
+    }
+}
@@ -0,0 +1,182 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2016, Seiji Sogabe
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.jenkinsci.plugins.gitbucket;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import static org.hamcrest.CoreMatchers.*;
+import static org.junit.Assert.assertThat;
+
+/**
+ * Test for {@link GitBucketTriggerQueue} class.
+ */
+public class GitBucketTriggerQueueTest {
+
+    private ExecutorService executor;
+
+    private GitBucketTriggerQueue target;
+
+    private final List<String> executed = Collections.synchronizedList(new ArrayList<String>());
+
+    @Before
+    public void setUp() {
+        executor = Executors.newCachedThreadPool();
+        target = new GitBucketTriggerQueue(executor, 1);
+    }
+
+    @After
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void testExecute_Priority() throws Exception {
+        CountDownLatch blocker = block();
+        target.execute(new Task("n1"), "repo", false);
+        target.execute(new Task("n2"), "repo", false);
+        target.execute(new Task("h1"), "repo", true);
+        target.execute(new Task("h2"), "repo", true);
+
+        blocker.countDown();
+        waitForCompletion(4);
+
+        assertThat(executed, is(Arrays.asList("h1", "h2", "n1", "n2")));
+    }
+
+    @Test
+    public void testExecute_NoStarvation() throws Exception {
+        CountDownLatch blocker = block();
+        target.execute(new Task("n1"), "repo", false);
+        for (int i = 1; i <= 6; i++) {
+            target.execute(new Task("h" + i), "repo", true);
+        }
+
+        blocker.countDown();
+        waitForCompletion(7);
+
+        assertThat(executed, is(Arrays.asList("h1", "h2", "h3", "h4", "n1", "h5", "h6")));
+    }
+
+    @Test
+    public void testExecute_RoundRobin() throws Exception {
+        CountDownLatch blocker = block();
+        for (int i = 1; i <= 3; i++) {
+            target.execute(new Task("a" + i), "owner/a", false);
+        }
+        target.execute(new Task("b1"), "owner/b", false);
+        target.execute(new Task("c1"), "owner/c", false);
+
+        blocker.countDown();
+        waitForCompletion(5);
+
+        assertThat(executed, is(Arrays.asList("a1", "b1", "c1", "a2", "a3")));
+    }
+
+    @Test
+    public void testExecute_Weight() throws Exception {
+        target.setWeights(Collections.singletonMap("Owner/A", 2));
+        CountDownLatch blocker = block();
+        for (int i = 1; i <= 4; i++) {
+            target.execute(new Task("a" + i), "owner/a", false);
+        }
+        for (int i = 1; i <= 2; i++) {
+            target.execute(new Task("b" + i), "owner/b", false);
+        }
+
+        blocker.countDown();
+        waitForCompletion(6);
+
+        assertThat(executed, is(Arrays.asList("a1", "a2", "b1", "a3", "a4", "b2")));
+    }
+
+    @Test
+    public void testExecute_Concurrency() throws Exception {
+        target.setMaxConcurrency(2);
+        final CountDownLatch started = new CountDownLatch(2);
+        final CountDownLatch release = new CountDownLatch(1);
+        for (int i = 0; i < 2; i++) {
+            target.execute(new Runnable() {
+                @Override
+                public void run() {
+                    started.countDown();
+                    await(release);
+                }
+            }, "repo" + i, false);
+        }
+
+        assertThat(started.await(10, TimeUnit.SECONDS), is(true));
+        release.countDown();
+    }
+
+    private CountDownLatch block() throws InterruptedException {
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch blocker = new CountDownLatch(1);
+        target.execute(new Runnable() {
+            @Override
+            public void run() {
+                started.countDown();
+                await(blocker);
+            }
+        }, "blocker", false);
+        started.await(10, TimeUnit.SECONDS);
+        return blocker;
+    }
+
+    private void waitForCompletion(int count) throws InterruptedException {
+        for (int i = 0; i < 100 && (executed.size() < count || target.size() > 0); i++) {
+            Thread.sleep(100);
+        }
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private class Task implements Runnable {
+
+        private final String name;
+
+        Task(String name) {
+            this.name = name;
+        }
+
+        @Override
+        public void run() {
+            executed.add(name);
+        }
+    }
+}
@@ -0,0 +1,305 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2016, Seiji Sogabe
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.jenkinsci.plugins.gitbucket;
+
+import hudson.EnvVars;
+import hudson.model.Cause;
+import hudson.model.FreeStyleProject;
+import hudson.model.Queue.WaitingItem;
+import hudson.model.TaskListener;
+import hudson.model.queue.QueueListener;
+import hudson.plugins.git.GitSCM;
+import hudson.util.StreamTaskListener;
+import java.io.File;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.net.URLEncoder;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import jenkins.model.Jenkins;
+import net.sf.json.JSONArray;
+import net.sf.json.JSONObject;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.eclipse.jgit.transport.URIish;
+import org.jenkinsci.plugins.gitbucket.GitBucketPushTrigger.GitBucketPushCause;
+import org.jenkinsci.plugins.gitclient.Git;
+import org.jenkinsci.plugins.gitclient.GitClient;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.jvnet.hudson.test.JenkinsRule;
+import org.jvnet.hudson.test.TestExtension;
+import static org.junit.Assume.assumeTrue;
+
+/**
+ * Load test of {@link GitBucketWebHook}.
+ *
+ * Replays push payloads against /gitbucket-webhook/ at a fixed rate, using
+ * local bare repositories as the remotes of the jobs, and reports the
+ * throughput and the latency from the push to the queue as the number of
+ * jobs grows. Skipped unless run with -Pload-test, and configured by the
+ * following system properties.
+ *
+ * <ul>
+ * <li>gitbucket.loadTest.jobs: comma separated numbers of jobs (default 10,50,100)</li>
+ * <li>gitbucket.loadTest.repositories: number of repositories the jobs are spread over (default 5)</li>
+ * <li>gitbucket.loadTest.pushes: number of pushes per round (default 50)</li>
+ * <li>gitbucket.loadTest.rate: pushes per second (default 10)</li>
+ * <li>gitbucket.loadTest.payload: recorded payload file, or the synthetic payload if not set</li>
+ * </ul>
+ */
+public class GitBucketWebHookLoadTest {
+
+    private static final String PREFIX = "gitbucket.loadTest";
+
+    @Rule
+    public JenkinsRule j = new JenkinsRule();
+
+    private final TaskListener listener = StreamTaskListener.fromStdout();
+
+    private final List<Remote> remotes = new ArrayList<Remote>();
+
+    private int jobCount;
+
+    @Before
+    public void setUp() {
+        assumeTrue(Boolean.getBoolean(PREFIX));
+    }
+
+    @Test
+    public void testLoad() throws Exception {
+        int repositories = Integer.getInteger(PREFIX + ".repositories", 5);
+        int pushes = Integer.getInteger(PREFIX + ".pushes", 50);
+        int rate = Integer.getInteger(PREFIX + ".rate", 10);
+        JSONObject template = loadPayload(System.getProperty(PREFIX + ".payload"));
+
+        for (int i = 0; i < repositories; i++) {
+            remotes.add(new Remote("repo" + i));
+        }
+
+        System.out.println("jobs\tpushes\tqueued\tthroughput(items/s)\tp50(ms)\tp90(ms)\tp99(ms)\tmax(ms)");
+        for (String jobs : System.getProperty(PREFIX + ".jobs", "10,50,100").split(",")) {
+            addJobs(Integer.parseInt(jobs.trim()), repositories);
+            Recorder.get().clear();
+            runRound(template, pushes, rate);
+        }
+    }
+
+    private void addJobs(int total, int repositories) throws Exception {
+        for (; jobCount < total; jobCount++) {
+            FreeStyleProject job = j.createFreeStyleProject("job" + jobCount);
+            job.setScm(new GitSCM(remotes.get(jobCount % repositories).getUrl()));
+            // keep the builds in the queue
+            job.setQuietPeriod(3600);
+            GitBucketPushTrigger trigger = new GitBucketPushTrigger(false);
+            job.addTrigger(trigger);
+            trigger.start(job, true);
+        }
+    }
+
+    private void runRound(JSONObject template, int pushes, int rate) throws Exception {
+        Map<String, Long> posted = new ConcurrentHashMap<String, Long>();
+        long interval = 1000L / Math.max(1, rate);
+        long start = System.currentTimeMillis();
+        for (int i = 0; i < pushes; i++) {
+            Remote remote = remotes.get(i % remotes.size());
+            String head = remote.commit();
+            String deliveryId = UUID.randomUUID().toString();
+            posted.put(deliveryId, System.currentTimeMillis());
+            post(createPayload(template, remote, head), deliveryId);
+            // the pushes merged into a queued build are not measured
+            j.jenkins.getQueue().clear();
+            long next = start + (i + 1) * interval;
+            long wait = next - System.currentTimeMillis();
+            if (wait > 0) {
+                Thread.sleep(wait);
+            }
+        }
+
+        // wait for the polls to finish
+        Thread.sleep(5000);
+        long elapsed = System.currentTimeMillis() - start;
+        j.jenkins.getQueue().clear();
+
+        List<Long> latencies = new ArrayList<Long>();
+        for (Queued q : Recorder.get().queued) {
+            Long at = posted.get(q.deliveryId);
+            if (at != null) {
+                latencies.add(q.time - at);
+            }
+        }
+        long[] sorted = new long[latencies.size()];
+        for (int i = 0; i < sorted.length; i++) {
+            sorted[i] = latencies.get(i);
+        }
+        Arrays.sort(sorted);
+        System.out.println(String.format("%d\t%d\t%d\t%.1f\t%d\t%d\t%d\t%d",
+                jobCount, pushes, sorted.length, sorted.length * 1000.0 / elapsed,
+                GitBucketLatencyStats.percentile(sorted, 50), GitBucketLatencyStats.percentile(sorted, 90),
+                GitBucketLatencyStats.percentile(sorted, 99), GitBucketLatencyStats.percentile(sorted, 100)));
+    }
+
+    private void post(String payload, String deliveryId) throws Exception {
+        URL url = new URL(j.getURL(), GitBucketWebHook.WEBHOOK_URL + '/');
+        HttpURLConnection con = (HttpURLConnection) url.openConnection();
+        con.setRequestMethod("POST");
+        con.setDoOutput(true);
+        con.setRequestProperty("Content-Type", "application/x-www-form-urlencoded");
+        con.setRequestProperty("X-Github-Event", "push");
+        con.setRequestProperty("X-Github-Delivery", deliveryId);
+        OutputStream out = con.getOutputStream();
+        try {
+            out.write(("payload=" + URLEncoder.encode(payload, "UTF-8")).getBytes("UTF-8"));
+        } finally {
+            out.close();
+        }
+        InputStream in = con.getResponseCode() < 400 ? con.getInputStream() : con.getErrorStream();
+        IOUtils.closeQuietly(in);
+    }
+
+    private static JSONObject loadPayload(String path) throws Exception {
+        if (path != null) {
+            return JSONObject.fromObject(FileUtils.readFileToString(new File(path), "UTF-8"));
+        }
+        JSONObject json = new JSONObject();
+        JSONObject pusher = new JSONObject();
+        pusher.put("name", "jenkins");
+        pusher.put("email", "jenkins@jenkins-ci.org");
+        json.put("pusher", pusher);
+        json.put("ref", "refs/heads/master");
+        JSONObject commit = new JSONObject();
+        commit.put("message", "load test");
+        JSONArray commits = new JSONArray();
+        commits.add(commit);
+        json.put("commits", commits);
+        json.put("repository", new JSONObject());
+        return json;
+    }
+
+    private static String createPayload(JSONObject template, Remote remote, String head) {
+        JSONObject json = JSONObject.fromObject(template.toString());
+        json.put("ref", "refs/heads/master");
+        JSONObject repository = json.getJSONObject("repository");
+        repository.put("name", remote.name);
+        repository.put("url", remote.getUrl());
+        repository.put("clone_url", remote.getUrl());
+        JSONObject owner = new JSONObject();
+        owner.put("name", "load");
+        repository.put("owner", owner);
+        JSONArray commits = json.optJSONArray("commits");
+        if (commits != null && !commits.isEmpty()) {
+            commits.getJSONObject(commits.size() - 1).put("id", head);
+        }
+        return json.toString();
+    }
+
+    /**
+     * Local bare repository standing in for a GitBucket repository.
+     */
+    private final class Remote {
+
+        private final String name;
+
+        private final File bare;
+
+        private final File work;
+
+        private final GitClient git;
+
+        private int commits;
+
+        Remote(String name) throws Exception {
+            this.name = name;
+            this.bare = j.createTmpDir();
+            this.work = j.createTmpDir();
+            Git.with(listener, new EnvVars()).in(bare).getClient().init_()
+                    .workspace(bare.getAbsolutePath()).bare(true).execute();
+            git = Git.with(listener, new EnvVars()).in(work).getClient();
+            git.init();
+            git.setAuthor("jenkins", "jenkins@example.com");
+            git.setCommitter("jenkins", "jenkins@example.com");
+            commit();
+        }
+
+        String getUrl() {
+            return bare.getAbsolutePath();
+        }
+
+        synchronized String commit() throws Exception {
+            FileUtils.writeStringToFile(new File(work, "file"), Integer.toString(++commits));
+            git.add("file");
+            git.commit("commit " + commits);
+            git.push().to(new URIish(getUrl())).ref("master").execute();
+            return git.revParse("HEAD").name();
+        }
+    }
+
+    private static final class Queued {
+
+        private final String deliveryId;
+
+        private final long time;
+
+        Queued(String deliveryId, long time) {
+            this.deliveryId = deliveryId;
+            this.time = time;
+        }
+    }
+
+    /**
+     * Records when the builds triggered by the pushes enter the queue.
+     */
+    @TestExtension
+    public static class Recorder extends QueueListener {
+
+        private final ConcurrentLinkedQueue<Queued> queued = new ConcurrentLinkedQueue<Queued>();
+
+        static Recorder get() {
+            return Jenkins.getInstance().getExtensionList(QueueListener.class).get(Recorder.class);
+        }
+
+        void clear() {
+            queued.clear();
+        }
+
+        @Override
+        public void onEnterWaiting(WaitingItem wi) {
+            long now = System.currentTimeMillis();
+            for (Cause cause : wi.getCauses()) {
+                if (cause instanceof GitBucketPushCause) {
+                    queued.add(new Queued(((GitBucketPushCause) cause).getDeliveryId(), now));
+                    return;
+                }
+            }
+        }
+    }
+}
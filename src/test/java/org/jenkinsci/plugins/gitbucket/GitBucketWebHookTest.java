@@ -34,7 +34,10 @@ import org.junit.Rule;
 import org.junit.Test;
 import org.jvnet.hudson.test.JenkinsRule;
 import org.kohsuke.stapler.StaplerRequest;
+import org.mockito.ArgumentCaptor;
 
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
 import static org.mockito.Matchers.anyObject;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.never;
@@ -81,6 +84,29 @@ public class GitBucketWebHookTest {
         verify(trigger, times(1)).onPost((GitBucketPushRequest) anyObject());
     }
 
+    @Test
+    public void testPushTrigger_DeliveryId() throws Exception {
+        String repo = j.createTmpDir().getAbsolutePath();
+
+        FreeStyleProject fsp = j.createFreeStyleProject("GitSCM Project");
+        GitBucketPushTrigger trigger = mock(GitBucketPushTrigger.class);
+        fsp.addTrigger(trigger);
+        fsp.setScm(new GitSCM(repo));
+
+        String payload = createPayload(repo, "jenkins");
+        StaplerRequest req = mock(StaplerRequest.class);
+        when(req.getParameter("payload")).thenReturn(payload);
+        when(req.getHeader("X-Github-Event")).thenReturn("push");
+        when(req.getHeader("X-Github-Delivery")).thenReturn("../../config");
+
+        GitBucketWebHook hook = new GitBucketWebHook();
+        hook.doIndex(req);
+
+        ArgumentCaptor<GitBucketPushRequest> captor = ArgumentCaptor.forClass(GitBucketPushRequest.class);
+        verify(trigger, times(1)).onPost(captor.capture());
+        assertThat(captor.getValue().getDeliveryId().matches("[0-9a-f-]{36}"), is(true));
+    }
+
     @Test
     public void testPushTrigger_NoPushEvent() throws Exception {
         // Repository URL
@@ -110,6 +136,36 @@ public class GitBucketWebHookTest {
         verify(trigger, never()).onPost((GitBucketPushRequest) anyObject());
     }
 
+    @Test
+    public void testPushTrigger_CreateEvent() throws Exception {
+        // Repository URL
+        String repo = j.createTmpDir().getAbsolutePath();
+
+        // Setup FreeStyle Project
+        FreeStyleProject fsp = j.createFreeStyleProject("GitSCM Project");
+
+        // Setup Trigger
+        GitBucketPushTrigger trigger = mock(GitBucketPushTrigger.class);
+        fsp.addTrigger(trigger);
+
+        // Setup SCM
+        SCM scm = new GitSCM(repo);
+        fsp.setScm(scm);
+
+        // Setup WebHook request
+        String payload = createPayload(repo, "jenkins");
+        StaplerRequest req = mock(StaplerRequest.class);
+        when(req.getParameter("payload")).thenReturn(payload);
+        when(req.getHeader("X-Github-Event")).thenReturn("create");
+
+        // Post WebHook
+        GitBucketWebHook hook = new GitBucketWebHook();
+        hook.doIndex(req);
+
+        // create event only notifies branch sources.
+        verify(trigger, never()).onPost((GitBucketPushRequest) anyObject());
+    }
+
     @Test
     public void testPushTrigger_GitSCM_NoRepositoryUrl() throws Exception {
         // Repository URL